@@ -0,0 +1,121 @@
+package com.example.plugin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实例化记录的存储和导出：编号化写入 {@link InstantiationStore}（分析结果按文件写入，以及部分结果 CSV 解析出的行），
+ * CSV 行的格式化与解析，以及按编号导出 XLSX。配合 -prof gc 查看分配量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecordStoreBenchmark {
+    @Param({"100000"})
+    public int rowCount;
+
+    private List<String[]> records;
+    // 与 records 相同的行，按测试文件分组，即分析结果的形式
+    private Map<String, List<Instantiation>> fileRecords;
+    private List<String> csvLines;
+    private File workDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("record-store-benchmark").toFile();
+        records = new ArrayList<>(rowCount);
+        csvLines = new ArrayList<>(rowCount);
+        fileRecords = new LinkedHashMap<>();
+        for (int i = 0; i < rowCount; i++) {
+            String[] record = {"Service" + i / 20 + "Test.java", "testCase" + i % 20, "com.example.bench.p" + i % 50 + ".Helper" + i % 400,
+                    String.valueOf(i % 3 == 0)};
+            records.add(record);
+            csvLines.add(CsvRows.format(record));
+            fileRecords.computeIfAbsent(record[0], key -> new ArrayList<>())
+                    .add(new Instantiation(record[1], record[2], i % 3 == 0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Benchmark
+    public long storeAppend() throws IOException {
+        try (InstantiationStore store = new InstantiationStore(1 << 20, workDir)) {
+            for (String[] record : records) {
+                store.append(record);
+            }
+            return store.size();
+        }
+    }
+
+    @Benchmark
+    public long storeAppendFileRecords() throws IOException {
+        try (InstantiationStore store = new InstantiationStore(1 << 20, workDir)) {
+            for (Map.Entry<String, List<Instantiation>> entry : fileRecords.entrySet()) {
+                store.append(entry.getKey(), entry.getValue());
+            }
+            return store.size();
+        }
+    }
+
+    // 堆内只保留一小段，测量转存到映射文件的开销
+    @Benchmark
+    public long storeAppendSpilled() throws IOException {
+        try (InstantiationStore store = new InstantiationStore(4096, workDir)) {
+            for (String[] record : records) {
+                store.append(record);
+            }
+            return store.size();
+        }
+    }
+
+    @Benchmark
+    public int csvFormat() {
+        int length = 0;
+        for (String[] record : records) {
+            length += CsvRows.format(record).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int csvParse() {
+        int fields = 0;
+        for (String line : csvLines) {
+            fields += CsvRows.parse(line).length;
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public void exportXlsxFromStore() throws IOException {
+        InstantiationXlsxWriter xlsxWriter = new InstantiationXlsxWriter(new File(workDir, "export_store.xlsx"));
+        try (InstantiationStore store = new InstantiationStore(1 << 20, workDir)) {
+            for (String[] record : records) {
+                store.append(record);
+            }
+            xlsxWriter.appendRows(store, 0, store.size());
+        } finally {
+            xlsxWriter.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.plugin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按修改列表还原改写结果（TEXT_OFFSETS 引擎和 Stage1Rebuilder 的最后一步）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TextEditBenchmark {
+    @Param({"10", "200"})
+    public int editCount;
+
+    private String originalText;
+    private List<TextEdit> edits;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        edits = new ArrayList<>(editCount);
+        for (int i = 0; i < editCount; i++) {
+            builder.append("        Helper").append(i).append(" helper").append(i).append(" = ");
+            edits.add(new TextEdit(builder.length(), "new Helper()".length() + String.valueOf(i).length(),
+                    "mock(Helper" + i + ".class)"));
+            builder.append("new Helper").append(i).append("();\n");
+        }
+        originalText = builder.toString();
+    }
+
+    @Benchmark
+    public String apply() {
+        return TextEdit.apply(originalText, edits);
+    }
+}
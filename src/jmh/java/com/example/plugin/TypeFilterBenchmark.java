@@ -0,0 +1,53 @@
+package com.example.plugin;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * filter-type 规则匹配：规则数量增加时单次匹配的耗时应保持不变
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TypeFilterBenchmark {
+    private static final String[] TYPES = {
+            "java.lang.String",
+            "java.util.Map<java.lang.String, java.util.List<java.lang.Integer>>",
+            "java.util.concurrent.atomic.AtomicLong",
+            "com.example.bench.p7.Service7",
+            "byte[]",
+            "org.apache.commons.collections4.map.LRUMap<java.lang.String, java.lang.Object>[]",
+    };
+
+    @Param({"10", "1000"})
+    public int ruleCount;
+
+    private TypeFilter typeFilter;
+
+    @Setup
+    public void setUp() {
+        typeFilter = new TypeFilter();
+        typeFilter.addPattern("java.lang.String");
+        typeFilter.addPattern("java.util.List<*>");
+        typeFilter.addPattern("java.util.concurrent.**");
+        typeFilter.addPattern("byte[]");
+        for (int i = 4; i < ruleCount; i++) {
+            switch (i % 3) {
+                case 0 -> typeFilter.addPattern("com.vendor" + i + ".Type" + i);
+                case 1 -> typeFilter.addPattern("com.vendor" + i + ".*");
+                default -> typeFilter.addPattern("com.vendor" + i + ".**");
+            }
+        }
+    }
+
+    @Benchmark
+    public void matches(Blackhole blackhole) {
+        for (String type : TYPES) {
+            blackhole.consume(typeFilter.matches(type));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.plugin;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Arrow IPC 列式输出：object_instantiations.arrow 保存 suite / case / class 三个 int32 编号列和 mocked 位列，
+ * 每积累 BATCH_SIZE 行写出一个 record batch；编号对应的字符串在关闭时写入 object_instantiations.dictionary.arrow
+ * （id int32, value utf8 两列）。读取端先加载字典，再按编号列批量还原。
+ */
+class ArrowInstantiationSink implements InstantiationSink {
+    private static final Logger logger = Logger.getLogger(ArrowInstantiationSink.class.getName());
+
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    private final File outputFile;
+    private final File dictionaryFile;
+    private final BufferAllocator allocator = new RootAllocator();
+    private final StringDictionary dictionary = new StringDictionary();
+    // 按编号追加时，记录存储的编号到本文件编号的映射
+    private StringDictionary.Remap remap;
+    private final IntVector suiteVector;
+    private final IntVector caseVector;
+    private final IntVector classVector;
+    private final BitVector mockedVector;
+    private final VectorSchemaRoot root;
+    private final FileOutputStream outputStream;
+    private final ArrowStreamWriter streamWriter;
+    private int batchRows;
+    private long rowCount;
+    private boolean failed;
+
+    /**
+     * Arrow 的内存访问需要 java.nio 对插件开放（--add-opens=java.base/java.nio=ALL-UNNAMED），否则分配缓冲区时才失败
+     */
+    static void checkMemoryAccess() throws IOException {
+        if (!Buffer.class.getModule().isOpen(Buffer.class.getPackageName(), ArrowInstantiationSink.class.getModule())) {
+            throw new IOException("Arrow output requires the VM option --add-opens=java.base/java.nio=ALL-UNNAMED.");
+        }
+    }
+
+    ArrowInstantiationSink(File outputFile, File dictionaryFile) throws IOException {
+        checkMemoryAccess();
+        this.outputFile = outputFile;
+        this.dictionaryFile = dictionaryFile;
+        File parentDir = outputFile.getAbsoluteFile().getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + parentDir.getAbsolutePath());
+        }
+
+        this.suiteVector = new IntVector("suite", allocator);
+        this.caseVector = new IntVector("case", allocator);
+        this.classVector = new IntVector("class", allocator);
+        this.mockedVector = new BitVector("mocked", allocator);
+        this.root = new VectorSchemaRoot(List.<FieldVector>of(suiteVector, caseVector, classVector, mockedVector));
+        this.outputStream = new FileOutputStream(outputFile);
+        this.streamWriter = new ArrowStreamWriter(root, null, outputStream.getChannel());
+        streamWriter.start();
+        allocateBatch();
+    }
+
+    @Override
+    public void appendRows(InstantiationStore store, long from, long to) {
+        if (remap == null || remap.source() != store.symbols()) {
+            remap = dictionary.remapFrom(store.symbols());
+        }
+        try {
+            store.forEach(from, to, (suite, testCase, className, mocked) -> {
+                try {
+                    appendRow(remap.map(suite), remap.map(testCase), remap.map(className), mocked);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            failed = true;
+            logger.severe("Failed to write Arrow records: " + e.getCause().getMessage());
+        }
+    }
+
+    private void appendRow(int suite, int testCase, int className, boolean mocked) throws IOException {
+        suiteVector.setSafe(batchRows, suite);
+        caseVector.setSafe(batchRows, testCase);
+        classVector.setSafe(batchRows, className);
+        mockedVector.setSafe(batchRows, mocked ? 1 : 0);
+        batchRows++;
+        rowCount++;
+        if (batchRows == BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    private void allocateBatch() {
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.allocateNew();
+        }
+        batchRows = 0;
+    }
+
+    private void flushBatch() throws IOException {
+        root.setRowCount(batchRows);
+        streamWriter.writeBatch();
+        allocateBatch();
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (batchRows > 0) {
+                flushBatch();
+            }
+            streamWriter.end();
+            writeDictionary();
+            logger.info("Arrow records saved to: " + outputFile.getPath() + " (" + rowCount + " rows, " + dictionary.size() + " symbols)");
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Failed to save Arrow records: " + e.getMessage());
+        } finally {
+            streamWriter.close();
+            root.close();
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                logger.warning("Failed to close Arrow file: " + e.getMessage());
+            }
+            allocator.close();
+        }
+    }
+
+    private void writeDictionary() throws IOException {
+        try (IntVector idVector = new IntVector("id", allocator);
+             VarCharVector valueVector = new VarCharVector("value", allocator);
+             VectorSchemaRoot dictionaryRoot = new VectorSchemaRoot(List.<FieldVector>of(idVector, valueVector));
+             FileOutputStream dictionaryStream = new FileOutputStream(dictionaryFile);
+             ArrowStreamWriter dictionaryWriter = new ArrowStreamWriter(dictionaryRoot, null, dictionaryStream.getChannel())) {
+            dictionaryWriter.start();
+            for (int start = 0; start < dictionary.size(); start += BATCH_SIZE) {
+                int end = Math.min(dictionary.size(), start + BATCH_SIZE);
+                idVector.allocateNew(end - start);
+                valueVector.allocateNew();
+                for (int id = start; id < end; id++) {
+                    idVector.set(id - start, id);
+                    valueVector.setSafe(id - start, dictionary.valueOf(id).getBytes(StandardCharsets.UTF_8));
+                }
+                dictionaryRoot.setRowCount(end - start);
+                dictionaryWriter.writeBatch();
+            }
+            dictionaryWriter.end();
+        }
+    }
+}
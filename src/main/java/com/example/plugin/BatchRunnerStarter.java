@@ -0,0 +1,207 @@
+package com.example.plugin;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * 无界面批处理入口：依次打开多个项目，运行与 "Modify All Test Files" 相同的流程，与项目索引重叠执行。
+ * <p>
+ * 用法：idea codeparser-batch --out=&lt;输出根目录&gt; [--parallel=N] [--no-incremental] [--engine=psi-copy|text-offsets]
+ * [--formats=xlsx,jsonl,arrow] [--stage1=files|edit-archive] [--shard-parallel=N] [--shards=&lt;分片 ID&gt;,...]
+ * [--record-heap-rows=N] [--dedup-store=&lt;目录&gt; | --no-dedup]
+ * &lt;项目目录&gt;... | @&lt;项目列表文件&gt;
+ * <p>
+ * 每个项目的结果写到 &lt;输出根目录&gt;/&lt;项目目录名&gt;，各分片的部分结果在其下的 shards/ 中，
+ * 改写结果只在 shards/&lt;分片目录&gt;/ 下（--stage1=edit-archive 时用 Stage1Rebuilder &lt;结果目录&gt; &lt;输出目录&gt; 按分片还原）；
+ * --shards 只重跑指定的分片（ID 见日志或分片目录中的 shard.complete），然后与其余分片重新合并。
+ * 所有项目共用 &lt;输出根目录&gt;/.dedup 去重存储，fork 和内嵌副本中内容相同的测试文件只改写一次。需要导入构建脚本的项目请加上 -Didea.trust.all.projects=true。
+ * arrow 格式需要在 IDE 的 VM 选项中加上 --add-opens=java.base/java.nio=ALL-UNNAMED，缺少时启动即报错退出。
+ */
+public class BatchRunnerStarter implements ApplicationStarter {
+    private static final Logger logger = Logger.getLogger(BatchRunnerStarter.class.getName());
+
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    @Override
+    public void main(@NotNull List<String> args) {
+        int exitCode;
+        try {
+            exitCode = runBatch(args.subList(1, args.size()));
+        } catch (IllegalArgumentException | IOException e) {
+            logger.severe(e.getMessage());
+            printUsage();
+            exitCode = 2;
+        }
+        System.exit(exitCode);
+    }
+
+    private int runBatch(List<String> args) throws IOException {
+        File outputRoot = null;
+        int parallel = 1;
+        boolean incremental = true;
+        PipelineConfig.RewriteEngine engine = PipelineConfig.RewriteEngine.TEXT_OFFSETS;
+        Set<PipelineConfig.OutputFormat> formats = null;
+        PipelineConfig.Stage1Format stage1Format = PipelineConfig.Stage1Format.FILES;
+        int shardParallelism = 2;
+        Set<String> shardFilter = Set.of();
+        Integer recordHeapRows = null;
+        File dedupDir = null;
+        boolean dedup = true;
+        List<Path> projectDirs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                outputRoot = new File(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--parallel=")) {
+                parallel = Math.max(1, Integer.parseInt(arg.substring("--parallel=".length())));
+            } else if (arg.equals("--no-incremental")) {
+                incremental = false;
+            } else if (arg.startsWith("--engine=")) {
+                engine = PipelineConfig.RewriteEngine.valueOf(arg.substring("--engine=".length()).toUpperCase(Locale.ROOT).replace('-', '_'));
+            } else if (arg.startsWith("--formats=")) {
+                formats = EnumSet.noneOf(PipelineConfig.OutputFormat.class);
+                for (String format : arg.substring("--formats=".length()).split(",")) {
+                    formats.add(PipelineConfig.OutputFormat.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                }
+            } else if (arg.startsWith("--stage1=")) {
+                stage1Format = PipelineConfig.Stage1Format.valueOf(arg.substring("--stage1=".length()).toUpperCase(Locale.ROOT).replace('-', '_'));
+            } else if (arg.startsWith("--shard-parallel=")) {
+                shardParallelism = Math.max(1, Integer.parseInt(arg.substring("--shard-parallel=".length())));
+            } else if (arg.startsWith("--dedup-store=")) {
+                dedupDir = new File(arg.substring("--dedup-store=".length()));
+            } else if (arg.equals("--no-dedup")) {
+                dedup = false;
+            } else if (arg.startsWith("--record-heap-rows=")) {
+                recordHeapRows = Integer.parseInt(arg.substring("--record-heap-rows=".length()));
+            } else if (arg.startsWith("--shards=")) {
+                shardFilter = new HashSet<>();
+                for (String shardId : arg.substring("--shards=".length()).split(",")) {
+                    if (!shardId.isBlank()) {
+                        shardFilter.add(shardId.trim());
+                    }
+                }
+            } else if (arg.startsWith("@")) {
+                // 项目列表文件：每行一个目录，# 开头为注释
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)) {
+                    String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                        projectDirs.add(Paths.get(trimmed));
+                    }
+                }
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                projectDirs.add(Paths.get(arg));
+            }
+        }
+        if (outputRoot == null || projectDirs.isEmpty()) {
+            throw new IllegalArgumentException("Both --out and at least one project directory are required.");
+        }
+
+        if (formats != null && formats.contains(PipelineConfig.OutputFormat.ARROW)) {
+            // 在打开项目之前检查，而不是分析完才在导出时失败
+            ArrowInstantiationSink.checkMemoryAccess();
+        }
+        if (dedup && dedupDir == null) {
+            dedupDir = new File(outputRoot, ".dedup");
+        }
+
+        // 多个项目同时运行时按项目数分摊 CPU 核数，避免线程超额订阅
+        int workersPerProject = Math.max(1, Runtime.getRuntime().availableProcessors() / parallel);
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("CodeParserBatch", parallel);
+        Map<Path, Future<?>> futures = new LinkedHashMap<>();
+        Set<String> usedNames = new HashSet<>();
+        for (Path projectDir : projectDirs) {
+            PipelineConfig config = new PipelineConfig(new File(outputRoot, uniqueName(projectDir, usedNames)))
+                    .setIncremental(incremental)
+                    .setRewriteEngine(engine)
+                    .setWorkerCount(workersPerProject)
+                    .setStage1Format(stage1Format)
+                    .setShardParallelism(shardParallelism)
+                    .setShardFilter(shardFilter)
+                    .setDedupDir(dedup ? dedupDir : null);
+            if (formats != null) {
+                config.setOutputFormats(formats);
+            }
+            if (recordHeapRows != null) {
+                config.setRecordStoreHeapRows(recordHeapRows);
+            }
+            futures.put(projectDir, executor.submit(() -> processProject(projectDir, config)));
+        }
+
+        int failures = 0;
+        for (Map.Entry<Path, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 1;
+            } catch (ExecutionException e) {
+                failures++;
+                logger.severe("Failed to process project " + entry.getKey() + ": " + e.getCause());
+            }
+        }
+        executor.shutdown();
+        logger.info("Batch finished: " + (projectDirs.size() - failures) + " of " + projectDirs.size() + " projects processed.");
+        return failures == 0 ? 0 : 1;
+    }
+
+    /**
+     * 打开项目、运行流程，最后关闭项目
+     */
+    private void processProject(Path projectDir, PipelineConfig config) {
+        logger.info("Opening project: " + projectDir);
+        Project project = ProjectUtil.openOrImport(projectDir, null, true);
+        if (project == null) {
+            throw new IllegalStateException("Cannot open project: " + projectDir);
+        }
+
+        try {
+            // 不等待索引完成：流程先做不依赖索引的工作，依赖索引的阶段会自动等到智能模式
+            long start = System.currentTimeMillis();
+            new TestFilesPipeline(project, config).run(new EmptyProgressIndicator());
+            logger.info("Processed " + projectDir + " in " + (System.currentTimeMillis() - start) + " ms, results in " + config.getResultRoot());
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() -> ProjectManager.getInstance().closeAndDispose(project));
+        }
+    }
+
+    // 不同路径下的同名项目目录追加序号，避免结果互相覆盖
+    private static String uniqueName(Path projectDir, Set<String> usedNames) {
+        String baseName = projectDir.toAbsolutePath().normalize().getFileName().toString();
+        String name = baseName;
+        for (int i = 2; !usedNames.add(name); i++) {
+            name = baseName + "_" + i;
+        }
+        return name;
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: codeparser-batch --out=<output root> [--parallel=N] [--no-incremental] [--engine=psi-copy|text-offsets]"
+                + " [--formats=xlsx,jsonl,arrow] [--stage1=files|edit-archive] [--shard-parallel=N] [--shards=<shard id>,...]"
+                + " [--record-heap-rows=N] [--dedup-store=<dir> | --no-dedup]"
+                + " <project dir>... | @<project list file>");
+        System.err.println("The arrow format requires the VM option --add-opens=java.base/java.nio=ALL-UNNAMED.");
+    }
+}
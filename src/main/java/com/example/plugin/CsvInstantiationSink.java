@@ -0,0 +1,71 @@
+package com.example.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * 分片的部分实例化记录：每条记录一行 CSV，供 {@link ShardMerger} 合并成最终的各格式输出
+ */
+class CsvInstantiationSink implements InstantiationSink {
+    private static final Logger logger = Logger.getLogger(CsvInstantiationSink.class.getName());
+
+    private final File outputFile;
+    private final BufferedWriter writer;
+    private boolean failed;
+
+    CsvInstantiationSink(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        Files.createDirectories(outputFile.toPath().toAbsolutePath().getParent());
+        this.writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8);
+        writer.write(CsvRows.format(InstantiationXlsxWriter.HEADER));
+        writer.write('\n');
+    }
+
+    @Override
+    public void appendRows(InstantiationStore store, long from, long to) {
+        StringDictionary symbols = store.symbols();
+        String[] row = new String[4];
+        store.forEach(from, to, (suite, testCase, className, mocked) -> {
+            row[0] = symbols.valueOf(suite);
+            row[1] = symbols.valueOf(testCase);
+            row[2] = symbols.valueOf(className);
+            row[3] = String.valueOf(mocked);
+            writeRow(row);
+        });
+    }
+
+    private void writeRow(String[] record) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(CsvRows.format(record));
+            writer.write('\n');
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Failed to write partial records to " + outputFile.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 部分结果不完整的分片不能标记为完成
+     */
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Failed to close partial records " + outputFile.getPath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单行 CSV 的格式化和解析：每个字段都加双引号，字段内的双引号写成两个。字段中不能有换行。
+ */
+final class CsvRows {
+    private CsvRows() {
+    }
+
+    static String format(String[] row) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(row[i].replace("\"", "\"\"")).append('"');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解析 {@link #format} 写出的一行，也接受未加引号的字段
+     */
+    static String[] parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
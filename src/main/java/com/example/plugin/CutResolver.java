@@ -0,0 +1,89 @@
+package com.example.plugin;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.*;
+
+/**
+ * 被测类（CUT）解析：运行开始前一次性遍历项目内容，建立 "简单类名 -> 源文件" 的映射，
+ * 之后每个测试文件的查找只是一次哈希查找。同名类有多个时优先选择同包、同模块、非测试源码中的文件。
+ * 映射建立后只读，可被多个分析线程并发使用。
+ */
+final class CutResolver {
+    private record Candidate(VirtualFile file, Module module, String packageName, boolean inTestSources) {
+    }
+
+    private final ProjectFileIndex fileIndex;
+    private final Map<String, List<Candidate>> candidatesByName;
+
+    private CutResolver(ProjectFileIndex fileIndex, Map<String, List<Candidate>> candidatesByName) {
+        this.fileIndex = fileIndex;
+        this.candidatesByName = candidatesByName;
+    }
+
+    /**
+     * 遍历项目中的全部 Java 源文件建立映射，必须在读操作中调用
+     */
+    static CutResolver build(Project project) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Map<String, List<Candidate>> candidatesByName = new HashMap<>();
+        fileIndex.iterateContent(file -> {
+            if (!file.isDirectory() && "java".equals(file.getExtension()) && fileIndex.isInSourceContent(file)) {
+                candidatesByName.computeIfAbsent(file.getNameWithoutExtension(), name -> new ArrayList<>(1))
+                        .add(new Candidate(file, fileIndex.getModuleForFile(file), packageOf(fileIndex, file),
+                                fileIndex.isInTestSourceContent(file)));
+            }
+            return true;
+        });
+        return new CutResolver(fileIndex, candidatesByName);
+    }
+
+    /**
+     * 为测试文件查找名为 cutClassName 的源文件；没有候选时返回 null。必须在读操作中调用
+     */
+    VirtualFile find(VirtualFile testFile, String cutClassName) {
+        List<Candidate> candidates = candidatesByName.get(cutClassName);
+        if (candidates == null) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0).file();
+        }
+
+        Module testModule = fileIndex.getModuleForFile(testFile);
+        String testPackage = packageOf(fileIndex, testFile);
+        Candidate best = null;
+        int bestScore = -1;
+        for (Candidate candidate : candidates) {
+            int score = score(candidate, testModule, testPackage);
+            if (score > bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        return best.file();
+    }
+
+    // 同包最重要，其次同模块，最后是生产代码优先于测试代码
+    private static int score(Candidate candidate, Module testModule, String testPackage) {
+        int score = 0;
+        if (Objects.equals(candidate.packageName(), testPackage)) {
+            score += 4;
+        }
+        if (testModule != null && testModule.equals(candidate.module())) {
+            score += 2;
+        }
+        if (!candidate.inTestSources()) {
+            score += 1;
+        }
+        return score;
+    }
+
+    private static String packageOf(ProjectFileIndex fileIndex, VirtualFile file) {
+        VirtualFile parent = file.getParent();
+        return parent != null ? fileIndex.getPackageNameByDirectory(parent) : null;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.plugin;
+
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiPackageStatement;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 跨项目共用的内容寻址存储：按规范化后的源码哈希保存改写结果（修改列表和实例化记录），
+ * 批处理多个 fork 或内嵌副本时，相同的测试文件只分析一次。
+ * <p>
+ * 规范化只去掉包名：包声明中的包名替换为占位符后再计算哈希，修改列表的偏移和替换文本、记录中的类名
+ * 也相对占位符保存，复用时换成当前文件的包名。这里假定内容相同的测试文件在不同项目中解析结果相同。
+ * 包声明以外还出现包名的文件（如导入了子包中的类）不保存：换到另一个包后，这些原样保留的名字会被误换成新包名。
+ * 条目按哈希保存为单独的文件，先写临时文件再原子替换，可被多个项目的流程同时读写。
+ * 读写都是磁盘 I/O，不要在读操作中调用；{@link #keyOf} 除外。
+ */
+final class DedupStore {
+    private static final Logger logger = Logger.getLogger(DedupStore.class.getName());
+
+    // 改写逻辑或条目格式变化时递增；版本也参与键的哈希，旧条目不会挡住新条目的写入
+    private static final int FORMAT_VERSION = 3;
+    // 占位符不会出现在合法的 Java 源码中
+    private static final String PACKAGE_PLACEHOLDER = "\u0000";
+
+    /**
+     * 一个文件在存储中的键，以及把结果换算到该文件所需的包名位置；没有包声明时 packageName 为空串、位置为 -1。
+     * portable 为 false 时包名还出现在包声明之外，结果不能换算到其他包，不保存
+     */
+    record Key(String hash, String packageName, int nameStart, int nameEnd, boolean portable) {
+        // 规范化文本比原文短的字符数
+        int shrink() {
+            return nameStart < 0 ? 0 : nameEnd - nameStart - PACKAGE_PLACEHOLDER.length();
+        }
+    }
+
+    /**
+     * 换算到当前文件后的结果
+     */
+    record Hit(List<TextEdit> edits, List<Instantiation> records) {
+    }
+
+    private final File storeDir;
+    private final String rulesFingerprint;
+
+    DedupStore(File storeDir, String rulesFingerprint) {
+        this.storeDir = storeDir;
+        this.rulesFingerprint = rulesFingerprint;
+    }
+
+    /**
+     * 计算文件的键，需在读操作中调用；text 为文件的当前内容
+     */
+    Key keyOf(PsiJavaFile javaFile, CharSequence text) {
+        PsiPackageStatement packageStatement = javaFile.getPackageStatement();
+        PsiJavaCodeReferenceElement packageReference = packageStatement != null ? packageStatement.getPackageReference() : null;
+        String normalized;
+        String packageName = "";
+        int nameStart = -1;
+        int nameEnd = -1;
+        if (packageReference != null) {
+            nameStart = packageReference.getTextRange().getStartOffset();
+            nameEnd = packageReference.getTextRange().getEndOffset();
+            packageName = packageStatement.getPackageName();
+            normalized = text.subSequence(0, nameStart) + PACKAGE_PLACEHOLDER + text.subSequence(nameEnd, text.length());
+        } else {
+            normalized = text.toString();
+        }
+        boolean portable = packageName.isEmpty() || indexOfQualified(normalized, packageName + ".", 0) < 0;
+        // 规则不同的结果不能复用
+        return new Key(ResultCache.contentHash(FORMAT_VERSION + "\n" + rulesFingerprint + "\n" + normalized), packageName, nameStart, nameEnd,
+                portable);
+    }
+
+    /**
+     * 查找内容相同的已处理文件，换算成当前文件的修改列表和记录；不存在时返回 null
+     */
+    Hit load(Key key) {
+        File entryFile = entryFile(key);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int editCount = in.readInt();
+            List<TextEdit> edits = new ArrayList<>(editCount);
+            int placeholderEnd = key.nameStart() + PACKAGE_PLACEHOLDER.length();
+            for (int i = 0; i < editCount; i++) {
+                int offset = in.readInt();
+                int length = in.readInt();
+                String replacement = withPackage(in.readUTF(), key.packageName());
+                edits.add(new TextEdit(key.nameStart() >= 0 && offset >= placeholderEnd ? offset + key.shrink() : offset,
+                        length, replacement));
+            }
+            int rowCount = in.readInt();
+            List<Instantiation> records = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                records.add(new Instantiation(withPackage(in.readUTF(), key.packageName()), withPackage(in.readUTF(), key.packageName()),
+                        in.readBoolean()));
+            }
+            return new Hit(edits, records);
+        } catch (IOException e) {
+            logger.warning("Failed to read dedup entry " + entryFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存一个文件的结果；已存在相同键的条目时不再写入。修改了包声明或不可移植（见 {@link Key}）的结果无法换算，不保存
+     */
+    void store(Key key, List<TextEdit> edits, List<Instantiation> records) {
+        if (!key.portable()) {
+            return;
+        }
+        File entryFile = entryFile(key);
+        if (entryFile.isFile()) {
+            return;
+        }
+        for (TextEdit edit : edits) {
+            if (key.nameStart() >= 0 && edit.offset() < key.nameEnd() && edit.offset() + edit.length() > key.nameStart()) {
+                return;
+            }
+        }
+
+        Path tempFile = null;
+        try {
+            Files.createDirectories(storeDir.toPath());
+            // 多个项目可能同时写同一个键，临时文件名必须唯一
+            tempFile = Files.createTempFile(storeDir.toPath(), entryFile.getName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(edits.size());
+                for (TextEdit edit : edits) {
+                    out.writeInt(key.nameStart() >= 0 && edit.offset() >= key.nameEnd() ? edit.offset() - key.shrink() : edit.offset());
+                    out.writeInt(edit.length());
+                    out.writeUTF(withoutPackage(edit.replacement(), key.packageName()));
+                }
+                out.writeInt(records.size());
+                for (Instantiation record : records) {
+                    out.writeUTF(withoutPackage(record.testCase(), key.packageName()));
+                    out.writeUTF(withoutPackage(record.className(), key.packageName()));
+                    out.writeBoolean(record.mocked());
+                }
+            }
+            Files.move(tempFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("Failed to write dedup entry " + entryFile.getName() + ": " + e.getMessage());
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    private File entryFile(Key key) {
+        // 按哈希前两位分目录，避免单个目录下文件过多
+        return new File(new File(storeDir, key.hash().substring(0, 2)), key.hash() + ".bin");
+    }
+
+    /**
+     * 把以 packageName. 开头的限定名中的包名换成占位符。只对可移植的文件调用：源码中除包声明外没有出现包名，
+     * 这样的名字只能来自按简单名解析到的同包类（或其嵌套类），换到其他包后对应新包中的同名类
+     */
+    static String withoutPackage(String text, String packageName) {
+        if (packageName.isEmpty()) {
+            return text;
+        }
+        String prefix = packageName + ".";
+        int index = indexOfQualified(text, prefix, 0);
+        if (index < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        int cursor = 0;
+        while (index >= 0) {
+            builder.append(text, cursor, index).append(PACKAGE_PLACEHOLDER).append('.');
+            cursor = index + prefix.length();
+            index = indexOfQualified(text, prefix, cursor);
+        }
+        return builder.append(text, cursor, text.length()).toString();
+    }
+
+    /**
+     * 从 from 起查找以 prefix 开头的限定名；前面是标识符或点的不算（如 org.com.a.Foo 中的 com.a.）
+     */
+    private static int indexOfQualified(String text, String prefix, int from) {
+        for (int index = text.indexOf(prefix, from); index >= 0; index = text.indexOf(prefix, index + 1)) {
+            if (index == 0 || !(Character.isJavaIdentifierPart(text.charAt(index - 1)) || text.charAt(index - 1) == '.')) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    static String withPackage(String text, String packageName) {
+        return text.indexOf(PACKAGE_PLACEHOLDER) < 0 ? text : text.replace(PACKAGE_PLACEHOLDER, packageName);
+    }
+}
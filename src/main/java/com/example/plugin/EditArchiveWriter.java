@@ -0,0 +1,72 @@
+package com.example.plugin;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * parsed_tests_stage1.zip 的写入器：每个测试文件一个条目，只保存原文路径、原文哈希和修改列表，
+ * 不保存完整的改写结果。条目格式见 {@link #write}，由 {@link Stage1Rebuilder} 读取。只在单个 I/O 线程上使用。
+ */
+class EditArchiveWriter implements Closeable {
+    private static final Logger logger = Logger.getLogger(EditArchiveWriter.class.getName());
+
+    static final int FORMAT_VERSION = 2;
+    static final String ENTRY_SUFFIX = ".edits";
+
+    private final File archiveFile;
+    private final ZipOutputStream zipStream;
+    private final DataOutputStream out;
+    private final Set<String> entryNames = new HashSet<>();
+
+    EditArchiveWriter(File archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        File parentDir = archiveFile.getAbsoluteFile().getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + parentDir.getAbsolutePath());
+        }
+        this.zipStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile)));
+        this.out = new DataOutputStream(zipStream);
+    }
+
+    /**
+     * 条目内容：版本、输出文件名、相对输出目录的路径、原文路径、原文哈希、修改数，然后每个修改的 offset、length、replacement。
+     * 版本 1 没有相对路径
+     */
+    void write(String fileName, String outputPath, String filePath, String contentHash, List<TextEdit> edits) throws IOException {
+        // 不同目录下的同名测试文件使用不同的条目名，输出文件名仍保存在条目内容中
+        String entryName = fileName + ENTRY_SUFFIX;
+        for (int i = 2; !entryNames.add(entryName); i++) {
+            entryName = fileName + "~" + i + ENTRY_SUFFIX;
+        }
+
+        zipStream.putNextEntry(new ZipEntry(entryName));
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(fileName);
+        out.writeUTF(outputPath);
+        out.writeUTF(filePath);
+        out.writeUTF(contentHash);
+        out.writeInt(edits.size());
+        for (TextEdit edit : edits) {
+            out.writeInt(edit.offset());
+            out.writeInt(edit.length());
+            out.writeUTF(edit.replacement());
+        }
+        out.flush();
+        zipStream.closeEntry();
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.close();
+            logger.info("Edit archive saved to: " + archiveFile.getPath() + " (" + entryNames.size() + " files)");
+        } catch (IOException e) {
+            logger.severe("Failed to save edit archive: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.plugin;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 导出阶段的扇出：每个输出格式一个工作线程和一个有界队列。一批记录（一个封存的 {@link InstantiationStore}）只发布一次，
+ * 由各个输出同时按编号消费，全部消费完后释放；慢的输出（XLSX）不会拖住其他输出，队列满时发布方阻塞。
+ * 关闭时等待全部工作线程写完，再按声明顺序关闭各输出并 fsync 其文件。某个输出失败后不再写入它，但仍继续取出批次，
+ * 不会卡住发布方；关闭结果按输出报告，不完整的文件不算成功。
+ */
+final class ExportFanOut {
+    private static final Logger logger = Logger.getLogger(ExportFanOut.class.getName());
+
+    // 每个输出最多积压的批数；每批最多 ShardRecords.BATCH_ROWS 行
+    private static final int QUEUE_CAPACITY = 2;
+
+    /**
+     * 一个输出及其写出的文件，files 在关闭后 fsync
+     */
+    record Target(String name, InstantiationSink sink, List<File> files) {
+    }
+
+    private record Batch(InstantiationStore store, AtomicInteger pendingConsumers) {
+    }
+
+    // 队列结束标记
+    private static final Batch END = new Batch(null, new AtomicInteger());
+
+    private final List<Target> targets;
+    private final List<BlockingQueue<Batch>> queues = new ArrayList<>();
+    private final List<Future<?>> workers = new ArrayList<>();
+    // 写入时抛出异常的输出，只由各自的工作线程添加
+    private final Set<Target> failedTargets = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    ExportFanOut(List<Target> targets) {
+        this.targets = List.copyOf(targets);
+        this.executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("CodeParser Export", Math.max(1, targets.size()));
+        for (Target target : this.targets) {
+            BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            workers.add(executor.submit(() -> consume(target, queue)));
+        }
+    }
+
+    /**
+     * 把一批写完的记录交给全部输出；store 之后不能再写入，全部输出消费完后由本类关闭
+     */
+    void publish(InstantiationStore store) {
+        if (queues.isEmpty()) {
+            store.close();
+            return;
+        }
+        Batch batch = new Batch(store, new AtomicInteger(queues.size()));
+        for (BlockingQueue<Batch> queue : queues) {
+            put(queue, batch);
+        }
+    }
+
+    private void consume(Target target, BlockingQueue<Batch> queue) {
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END) {
+                    return;
+                }
+                try {
+                    if (!failedTargets.contains(target)) {
+                        target.sink().appendRows(batch.store(), 0, batch.store().size());
+                    }
+                } catch (RuntimeException e) {
+                    // 继续取出后续批次，发布方不会因为这个输出卡住
+                    failedTargets.add(target);
+                    logger.severe("Export to " + target.name() + " failed: " + e);
+                } finally {
+                    if (batch.pendingConsumers().decrementAndGet() == 0) {
+                        batch.store().close();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // 没有取完全部批次，输出不完整
+            failedTargets.add(target);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待全部输出写完，然后按顺序关闭并 fsync；返回是否每个输出都完整写出并落盘。
+     * 任何一个输出在工作线程全部结束之前都不会被关闭
+     */
+    boolean close() {
+        boolean interrupted = false;
+        for (int i = 0; i < queues.size(); i++) {
+            // 工作线程已经退出时队列可能一直是满的
+            while (!workers.get(i).isDone()) {
+                try {
+                    if (queues.get(i).offer(END, 100, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            Target target = targets.get(i);
+            while (true) {
+                try {
+                    workers.get(i).get();
+                    break;
+                } catch (ExecutionException e) {
+                    failedTargets.add(target);
+                    logger.severe("Export worker for " + target.name() + " failed: " + e.getCause());
+                    break;
+                } catch (InterruptedException e) {
+                    // 中断时也要等工作线程退出，否则会关闭仍在写入的输出
+                    interrupted = true;
+                }
+            }
+        }
+        executor.shutdown();
+
+        boolean success = true;
+        for (Target target : targets) {
+            target.sink().close();
+            boolean complete = !failedTargets.contains(target) && !target.sink().hasFailed();
+            for (File file : target.files()) {
+                complete &= fsync(file);
+            }
+            if (!complete) {
+                logger.warning("Instantiation output " + target.name() + " is incomplete.");
+            }
+            success &= complete;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return success;
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        }
+    }
+
+    /**
+     * 把文件内容强制写到磁盘；文件不存在时（输出失败）返回 false
+     */
+    static boolean fsync(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to fsync " + file.getPath() + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.plugin;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 直接从实例化索引导出 XLSX，不重新分析测试文件；只有索引时无法确定类名的条目需要在所在文件上解析
+ */
+public class ExportIndexedInstantiationsAction extends AnAction {
+    private static final Logger logger = Logger.getLogger(ExportIndexedInstantiationsAction.class.getName());
+
+    // 每个读操作处理的类名数
+    private static final int CLASS_BATCH_SIZE = 200;
+    // 每个读操作解析的文件数，这些文件需要加载 PSI
+    private static final int FILE_BATCH_SIZE = 20;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            logger.warning("No project is open.");
+            return;
+        }
+
+        File outputFile = ModifyAllTestFilesAction.createConfig().getIndexedXlsxOutputFile();
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Exporting indexed instantiations", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                InstantiationXlsxWriter xlsxWriter = new InstantiationXlsxWriter(outputFile);
+                try {
+                    // 索引查询需要智能模式；每批类名一个可取消的短读操作，写 XLSX 在读操作之外，不阻塞写操作
+                    InstantiationIndexService indexService = InstantiationIndexService.getInstance(project);
+                    List<String> classNames = ReadAction.nonBlocking(indexService::getIndexedClassNames)
+                            .inSmartMode(project)
+                            .wrapProgress(indicator)
+                            .executeSynchronously();
+                    List<VirtualFile> unresolvedFiles = ReadAction.nonBlocking(indexService::getFilesWithUnresolvedNames)
+                            .inSmartMode(project)
+                            .wrapProgress(indicator)
+                            .executeSynchronously();
+                    double total = classNames.size() + unresolvedFiles.size();
+                    indicator.setIndeterminate(false);
+                    for (int from = 0; from < classNames.size(); from += CLASS_BATCH_SIZE) {
+                        List<String> batch = classNames.subList(from, Math.min(classNames.size(), from + CLASS_BATCH_SIZE));
+                        List<String[]> records = ReadAction.nonBlocking(() -> indexService.collectInstantiations(batch))
+                                .inSmartMode(project)
+                                .wrapProgress(indicator)
+                                .executeSynchronously();
+                        appendRecords(xlsxWriter, records, outputFile.getAbsoluteFile().getParentFile());
+                        indicator.setFraction((from + batch.size()) / total);
+                    }
+                    // 索引时无法确定类名的条目在所在文件上解析
+                    for (int from = 0; from < unresolvedFiles.size(); from += FILE_BATCH_SIZE) {
+                        List<VirtualFile> batch = unresolvedFiles.subList(from, Math.min(unresolvedFiles.size(), from + FILE_BATCH_SIZE));
+                        List<String[]> records = ReadAction.nonBlocking(() -> indexService.collectUnresolvedInstantiations(batch))
+                                .inSmartMode(project)
+                                .wrapProgress(indicator)
+                                .executeSynchronously();
+                        appendRecords(xlsxWriter, records, outputFile.getAbsoluteFile().getParentFile());
+                        indicator.setFraction((classNames.size() + from + batch.size()) / total);
+                    }
+                } finally {
+                    xlsxWriter.close();
+                }
+            }
+        });
+    }
+
+    // 输出只接受编号化的记录存储；一批记录本来就在堆内，存储不会转存
+    private static void appendRecords(InstantiationXlsxWriter xlsxWriter, List<String[]> records, File spillDir) {
+        try (InstantiationStore store = new InstantiationStore(Math.max(1, records.size()), spillDir)) {
+            for (String[] record : records) {
+                store.append(record);
+            }
+            xlsxWriter.appendRows(store, 0, store.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.plugin;
+
+/**
+ * 一条对象实例化记录：测试用例、类名和是否 mock。所属的测试文件名由外层的 {@link TestFileResult} 给出，不在每行重复保存；
+ * 输出时与文件名一起写入分片的 {@link InstantiationStore}
+ */
+record Instantiation(String testCase, String className, boolean mocked) {
+}
@@ -0,0 +1,368 @@
+package com.example.plugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 测试文件中对象实例化记录的持久化索引：类名 -> 该文件中的 (测试用例, 是否 mock) 列表。
+ * 由 IDE 在文件变化时增量更新。索引器不能解析引用，只在语法上能唯一确定全限定名时直接按类名记录：
+ * 已限定的名字、文件中声明的类、单类型导入、常用的 Mockito / JUnit 按需导入，以及文件没有其他按需导入时的 java.lang 和当前包。
+ * 其余情况（有其他按需导入、带类型参数的类型、var 声明）记在 {@link #UNRESOLVED} 下并保存源码偏移，
+ * 由 {@link InstantiationIndexService} 在查询时于智能模式的读操作中解析，得到与改写流程相同的规范文本。
+ * mock 调用按 mock()/spy() 及 Mockito./BDDMockito. 限定符识别；基本类型在查询时由 {@link TypeClassifier} 过滤。
+ */
+public class InstantiationIndex extends FileBasedIndexExtension<String, List<InstantiationIndex.IndexedInstantiation>> {
+    static final ID<String, List<IndexedInstantiation>> NAME = ID.create("com.example.plugin.testInstantiations");
+
+    // 与 TestFileRewriter 的记录格式一致：类级别 @Mock 字段的测试用例名
+    static final String CLASS_LEVEL = "CLASS_LEVEL";
+    // 需要在查询时解析的记录的键，不是合法的类名
+    static final String UNRESOLVED = "?";
+
+    /**
+     * offset 只用于 {@link #UNRESOLVED} 下的记录：reference 为 true 时是 new 表达式的类引用的起点，否则是类型元素的起点；
+     * 其余记录为 -1
+     */
+    record IndexedInstantiation(String testCase, boolean mocked, int offset, boolean reference) {
+    }
+
+    @Override
+    public @NotNull ID<String, List<IndexedInstantiation>> getName() {
+        return NAME;
+    }
+
+    @Override
+    public @NotNull DataIndexer<String, List<IndexedInstantiation>, FileContent> getIndexer() {
+        return inputData -> {
+            // 不含 Test 字样的文件不是测试文件，不需要构建 PSI
+            if (!StringUtil.contains(inputData.getContentAsText(), "Test")
+                    || !(inputData.getPsiFile() instanceof PsiJavaFile javaFile)) {
+                return Map.of();
+            }
+            return new Extractor(javaFile).extract();
+        };
+    }
+
+    @Override
+    public @NotNull KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public @NotNull DataExternalizer<List<IndexedInstantiation>> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<IndexedInstantiation> value) throws IOException {
+                DataInputOutputUtil.writeINT(out, value.size());
+                for (IndexedInstantiation instantiation : value) {
+                    IOUtil.writeUTF(out, instantiation.testCase());
+                    out.writeBoolean(instantiation.mocked());
+                    DataInputOutputUtil.writeINT(out, instantiation.offset() + 1);
+                    out.writeBoolean(instantiation.reference());
+                }
+            }
+
+            @Override
+            public List<IndexedInstantiation> read(@NotNull DataInput in) throws IOException {
+                int size = DataInputOutputUtil.readINT(in);
+                List<IndexedInstantiation> value = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    value.add(new IndexedInstantiation(IOUtil.readUTF(in), in.readBoolean(), DataInputOutputUtil.readINT(in) - 1,
+                            in.readBoolean()));
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * 提取规则或存储格式变化时必须递增
+     */
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public @NotNull FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * 在单个文件的轻量 PSI 上按语法提取实例化记录，规则与 TestFileRewriter 的三个记录来源对应：
+     * 类级别 @Mock 字段、带初始化器的局部变量、赋值右侧的 new / mock(X.class)
+     */
+    private static final class Extractor {
+        private static final Set<String> JAVA_LANG_NAMES = Set.of(
+                "Object", "String", "StringBuilder", "StringBuffer", "CharSequence", "Boolean", "Byte", "Short",
+                "Character", "Integer", "Long", "Float", "Double", "Number", "Void", "Class", "ClassLoader", "Enum",
+                "Thread", "ThreadLocal", "Runnable", "Iterable", "Comparable", "Throwable", "Exception", "Error",
+                "RuntimeException", "Math", "System", "Record");
+        private static final Set<String> MOCK_METHODS = Set.of("mock", "spy");
+        private static final Set<String> MOCKITO_QUALIFIERS = Set.of("Mockito", "BDDMockito");
+        private static final Set<String> KNOWN_ON_DEMAND_IMPORTS = Set.of("org.mockito", "org.junit", "org.junit.jupiter.api");
+
+        private final PsiJavaFile javaFile;
+        private final Map<String, String> singleImports = new HashMap<>();
+        private final Set<String> onDemandImports = new HashSet<>();
+        // 文件中声明的类（含各级内部类）：简单名 -> 全限定名
+        private final Map<String, String> declaredClasses = new HashMap<>();
+        // 有无法在语法上判断的按需导入时，java.lang 和当前包的猜测都不可靠
+        private boolean hasOtherOnDemandImports;
+        private final Map<String, List<IndexedInstantiation>> result = new HashMap<>();
+
+        Extractor(PsiJavaFile javaFile) {
+            this.javaFile = javaFile;
+            PsiImportList importList = javaFile.getImportList();
+            if (importList != null) {
+                for (PsiImportStatement importStatement : importList.getImportStatements()) {
+                    PsiJavaCodeReferenceElement reference = importStatement.getImportReference();
+                    if (reference == null) {
+                        continue;
+                    }
+                    String importedName = referenceText(reference);
+                    if (importStatement.isOnDemand()) {
+                        onDemandImports.add(importedName);
+                        hasOtherOnDemandImports |= !KNOWN_ON_DEMAND_IMPORTS.contains(importedName);
+                    } else {
+                        singleImports.put(reference.getReferenceName(), importedName);
+                    }
+                }
+            }
+        }
+
+        Map<String, List<IndexedInstantiation>> extract() {
+            List<PsiClass> classes = new ArrayList<>();
+            for (PsiClass psiClass : javaFile.getClasses()) {
+                collectClasses(psiClass, classes);
+            }
+            if (!hasTestMethod(classes)) {
+                return Map.of();
+            }
+            for (PsiClass psiClass : classes) {
+                if (psiClass.getName() != null && psiClass.getQualifiedName() != null) {
+                    declaredClasses.putIfAbsent(psiClass.getName(), psiClass.getQualifiedName());
+                }
+            }
+            for (PsiClass psiClass : classes) {
+                for (PsiField field : psiClass.getFields()) {
+                    if (hasAnnotation(field, "org.mockito.Mock") && field.getTypeElement() != null) {
+                        addType(field.getTypeElement(), CLASS_LEVEL, true);
+                    }
+                }
+                for (PsiMethod method : psiClass.getMethods()) {
+                    PsiCodeBlock body = method.getBody();
+                    if (body != null) {
+                        body.accept(new MethodBodyVisitor(method.getName()));
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 顶层类及其各级内部类（JUnit 5 的 @Nested、静态内部测试类），与改写流程遍历整个文件的范围一致
+         */
+        private static void collectClasses(PsiClass psiClass, List<PsiClass> classes) {
+            classes.add(psiClass);
+            for (PsiClass innerClass : psiClass.getInnerClasses()) {
+                collectClasses(innerClass, classes);
+            }
+        }
+
+        private boolean hasTestMethod(List<PsiClass> classes) {
+            for (PsiClass psiClass : classes) {
+                for (PsiMethod method : psiClass.getMethods()) {
+                    if (hasAnnotation(method, "org.junit.Test") || hasAnnotation(method, "org.junit.jupiter.api.Test")) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean hasAnnotation(PsiModifierListOwner owner, String qualifiedName) {
+            PsiModifierList modifierList = owner.getModifierList();
+            if (modifierList == null) {
+                return false;
+            }
+            for (PsiAnnotation annotation : modifierList.getAnnotations()) {
+                PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                if (reference == null) {
+                    continue;
+                }
+                // 无法确定限定名时按名字后缀匹配
+                String name = referenceText(reference);
+                String qualified = qualify(name);
+                if (qualified != null ? qualifiedName.equals(qualified) : qualifiedName.endsWith("." + name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private final class MethodBodyVisitor extends JavaRecursiveElementWalkingVisitor {
+            private final String methodName;
+
+            MethodBodyVisitor(String methodName) {
+                this.methodName = methodName;
+            }
+
+            @Override
+            public void visitLocalVariable(@NotNull PsiLocalVariable variable) {
+                PsiExpression initializer = variable.getInitializer();
+                PsiTypeElement typeElement = variable.getTypeElement();
+                if (initializer != null) {
+                    // var 声明的类型由初始化器推断，在查询时解析
+                    boolean mocked = startsWithMockCall(initializer);
+                    if (typeElement.isInferredType()) {
+                        addUnresolved(typeElement.getTextRange().getStartOffset(), false, methodName, mocked);
+                    } else {
+                        addType(typeElement, methodName, mocked);
+                    }
+                }
+                super.visitLocalVariable(variable);
+            }
+
+            @Override
+            public void visitAssignmentExpression(@NotNull PsiAssignmentExpression expression) {
+                PsiExpression rhs = expression.getRExpression();
+                if (rhs != null) {
+                    addInstantiation(rhs, methodName);
+                }
+                super.visitAssignmentExpression(expression);
+            }
+        }
+
+        /**
+         * 记录 new X(...) 或 mock(X.class) 的 X，与改写流程一致：new 表达式按擦除后的类名，其余表达式不记录
+         */
+        private void addInstantiation(PsiExpression expression, String testCase) {
+            if (expression instanceof PsiNewExpression newExpression) {
+                PsiJavaCodeReferenceElement classReference = newExpression.getClassReference();
+                if (classReference != null) {
+                    String className = qualify(referenceText(classReference));
+                    if (className != null) {
+                        add(className, testCase, false);
+                    } else {
+                        addUnresolved(classReference.getTextRange().getStartOffset(), true, testCase, false);
+                    }
+                }
+            } else if (expression instanceof PsiMethodCallExpression call && isMockCall(call)) {
+                PsiExpression[] arguments = call.getArgumentList().getExpressions();
+                if (arguments.length == 1 && arguments[0] instanceof PsiClassObjectAccessExpression classObject) {
+                    addType(classObject.getOperand(), testCase, true);
+                }
+            }
+        }
+
+        private boolean startsWithMockCall(PsiExpression expression) {
+            if (!(expression instanceof PsiMethodCallExpression call)) {
+                return false;
+            }
+            while (call.getMethodExpression().getQualifierExpression() instanceof PsiMethodCallExpression qualifierCall) {
+                call = qualifierCall;
+            }
+            return isMockCall(call);
+        }
+
+        private boolean isMockCall(PsiMethodCallExpression call) {
+            PsiReferenceExpression methodExpression = call.getMethodExpression();
+            if (!MOCK_METHODS.contains(methodExpression.getReferenceName())) {
+                return false;
+            }
+            PsiExpression qualifier = methodExpression.getQualifierExpression();
+            return qualifier == null
+                    || qualifier instanceof PsiReferenceExpression reference && MOCKITO_QUALIFIERS.contains(reference.getReferenceName());
+        }
+
+        /**
+         * 记录类型元素的全限定名（基本类型为其关键字，数组追加 []）；带类型参数或无法确定限定名时在查询时解析
+         */
+        private void addType(PsiTypeElement typeElement, String testCase, boolean mocked) {
+            PsiJavaCodeReferenceElement reference = typeElement.getInnermostComponentReferenceElement();
+            PsiType type = typeElement.getType();
+            String baseName = reference == null ? type.getDeepComponentType().getPresentableText()
+                    : typeElement.getText().indexOf('<') < 0 ? qualify(referenceText(reference)) : null;
+            if (baseName != null) {
+                add(baseName + "[]".repeat(type.getArrayDimensions()), testCase, mocked);
+            } else {
+                addUnresolved(typeElement.getTextRange().getStartOffset(), false, testCase, mocked);
+            }
+        }
+
+        /**
+         * 按文件中声明的类、单类型导入、按需导入、java.lang 和当前包依次补全首段类名；已是全限定名的保持不变。
+         * 文件有其他按需导入时，java.lang 和当前包只是猜测，返回 null
+         */
+        private String qualify(String name) {
+            int dot = name.indexOf('.');
+            String head = dot < 0 ? name : name.substring(0, dot);
+            String tail = dot < 0 ? "" : name.substring(dot);
+            if (head.isEmpty() || Character.isLowerCase(head.charAt(0))) {
+                return name;
+            }
+            String declared = declaredClasses.get(head);
+            if (declared != null) {
+                return declared + tail;
+            }
+            String imported = singleImports.get(head);
+            if (imported != null) {
+                return imported + tail;
+            }
+            for (String onDemand : onDemandImports) {
+                // 只能识别常用的 Mockito / JUnit 按需导入，其它包无法在不解析的情况下确定
+                if (onDemand.equals("org.mockito") && head.equals("Mock")
+                        || onDemand.equals("org.junit") && head.equals("Test")
+                        || onDemand.equals("org.junit.jupiter.api") && head.equals("Test")) {
+                    return onDemand + "." + name;
+                }
+            }
+            if (hasOtherOnDemandImports) {
+                return null;
+            }
+            if (JAVA_LANG_NAMES.contains(head)) {
+                return "java.lang." + name;
+            }
+            String packageName = javaFile.getPackageName();
+            return packageName.isEmpty() ? name : packageName + "." + name;
+        }
+
+        private void add(String className, String testCase, boolean mocked) {
+            result.computeIfAbsent(className, key -> new ArrayList<>()).add(new IndexedInstantiation(testCase, mocked, -1, false));
+        }
+
+        private void addUnresolved(int offset, boolean reference, String testCase, boolean mocked) {
+            result.computeIfAbsent(UNRESOLVED, key -> new ArrayList<>()).add(new IndexedInstantiation(testCase, mocked, offset, reference));
+        }
+
+        /**
+         * 引用的点分文本，不含类型参数和空白
+         */
+        private static String referenceText(PsiJavaCodeReferenceElement reference) {
+            PsiElement qualifier = reference.getQualifier();
+            String name = reference.getReferenceName();
+            return qualifier instanceof PsiJavaCodeReferenceElement qualifierReference
+                    ? referenceText(qualifierReference) + "." + name
+                    : name;
+        }
+    }
+}
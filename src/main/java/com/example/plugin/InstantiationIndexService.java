@@ -0,0 +1,185 @@
+package com.example.plugin;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 基于 {@link InstantiationIndex} 的查询服务。按类名记录的条目不遍历任何 PSI；
+ * 索引器无法在语法上确定类名的条目（{@link InstantiationIndex#UNRESOLVED}）在查询时按偏移在所在文件上解析，
+ * 得到与改写流程相同的类名，只有这些文件需要加载 PSI。
+ * 返回的记录与 object_instantiations.xlsx 的行格式相同：{测试文件名, 测试用例, 类名, 是否 mock}。
+ * 所有方法都必须在智能模式下的读操作中调用。
+ */
+@Service(Service.Level.PROJECT)
+public final class InstantiationIndexService {
+    private static final Logger logger = Logger.getLogger(InstantiationIndexService.class.getName());
+
+    private final Project project;
+
+    public InstantiationIndexService(Project project) {
+        this.project = project;
+    }
+
+    static InstantiationIndexService getInstance(Project project) {
+        return project.getService(InstantiationIndexService.class);
+    }
+
+    /**
+     * 项目中某个类（全限定名）的全部实例化记录
+     */
+    List<String[]> findInstantiations(String className) {
+        List<String[]> records = new ArrayList<>();
+        processInstantiations(className, false, records::add);
+        return records;
+    }
+
+    /**
+     * 项目中某个类（全限定名）被 mock 的实例化记录
+     */
+    List<String[]> findMockedInstantiations(String className) {
+        List<String[]> records = new ArrayList<>();
+        processInstantiations(className, true, records::add);
+        return records;
+    }
+
+    /**
+     * 索引中按类名记录的全部类名。导出全部记录时先取类名，再按批在各自的短读操作中调用 {@link #collectInstantiations}；
+     * 需要解析的条目另由 {@link #getFilesWithUnresolvedNames} 和 {@link #collectUnresolvedInstantiations} 导出
+     */
+    List<String> getIndexedClassNames() {
+        List<String> classNames = new ArrayList<>(FileBasedIndex.getInstance().getAllKeys(InstantiationIndex.NAME, project));
+        classNames.remove(InstantiationIndex.UNRESOLVED);
+        return classNames;
+    }
+
+    /**
+     * 一批类名中非基本类型的全部实例化记录，不包括需要解析的条目
+     */
+    List<String[]> collectInstantiations(List<String> classNames) {
+        TypeClassifier typeClassifier = TypeClassifier.getInstance(project);
+        List<String[]> records = new ArrayList<>();
+        for (String className : classNames) {
+            if (!typeClassifier.isBasicClassName(className)) {
+                processIndexedValues(className, false, records::add);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 含有需要在查询时解析的条目的测试文件
+     */
+    List<VirtualFile> getFilesWithUnresolvedNames() {
+        return new ArrayList<>(FileBasedIndex.getInstance().getContainingFiles(InstantiationIndex.NAME, InstantiationIndex.UNRESOLVED,
+                GlobalSearchScope.projectScope(project)));
+    }
+
+    /**
+     * 解析一批文件中需要解析的条目，返回其中非基本类型的实例化记录
+     */
+    List<String[]> collectUnresolvedInstantiations(List<VirtualFile> files) {
+        List<String[]> records = new ArrayList<>();
+        for (VirtualFile file : files) {
+            processUnresolved(file, null, false, records::add);
+        }
+        return records;
+    }
+
+    private boolean processInstantiations(String className, boolean mockedOnly, Processor<String[]> processor) {
+        if (!processIndexedValues(className, mockedOnly, processor)) {
+            return false;
+        }
+        for (VirtualFile file : getFilesWithUnresolvedNames()) {
+            if (!processUnresolved(file, className, mockedOnly, processor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean processIndexedValues(String className, boolean mockedOnly, Processor<String[]> processor) {
+        return FileBasedIndex.getInstance().processValues(InstantiationIndex.NAME, className, null, (file, instantiations) -> {
+            for (InstantiationIndex.IndexedInstantiation instantiation : instantiations) {
+                if (mockedOnly && !instantiation.mocked()) {
+                    continue;
+                }
+                String[] record = {file.getName(), instantiation.testCase(), className, String.valueOf(instantiation.mocked())};
+                if (!processor.process(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }, GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * 解析一个文件中需要解析的条目；className 不为 null 时只处理解析为该类的记录。基本类型跳过
+     */
+    private boolean processUnresolved(VirtualFile file, String className, boolean mockedOnly, Processor<String[]> processor) {
+        Map<String, List<InstantiationIndex.IndexedInstantiation>> fileData =
+                FileBasedIndex.getInstance().getFileData(InstantiationIndex.NAME, file, project);
+        List<InstantiationIndex.IndexedInstantiation> instantiations = fileData.get(InstantiationIndex.UNRESOLVED);
+        if (instantiations == null || !(PsiManager.getInstance(project).findFile(file) instanceof PsiJavaFile javaFile)) {
+            return true;
+        }
+        TypeClassifier typeClassifier = TypeClassifier.getInstance(project);
+        for (InstantiationIndex.IndexedInstantiation instantiation : instantiations) {
+            if (mockedOnly && !instantiation.mocked()) {
+                continue;
+            }
+            String resolved = resolveClassName(javaFile, instantiation);
+            if (resolved == null) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Cannot resolve indexed instantiation at " + instantiation.offset() + " in " + file.getPath());
+                }
+                continue;
+            }
+            if (className != null ? !className.equals(resolved) : typeClassifier.isBasicClassName(resolved)) {
+                continue;
+            }
+            String[] record = {file.getName(), instantiation.testCase(), resolved, String.valueOf(instantiation.mocked())};
+            if (!processor.process(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按偏移找到索引时记录的类引用或类型元素，按改写流程的方式取类名：
+     * new 表达式的类引用取擦除后的全限定名，类型元素（包括 var）取类型的规范文本
+     */
+    private static String resolveClassName(PsiJavaFile javaFile, InstantiationIndex.IndexedInstantiation instantiation) {
+        PsiElement leaf = javaFile.findElementAt(instantiation.offset());
+        if (instantiation.reference()) {
+            PsiJavaCodeReferenceElement reference = PsiTreeUtil.getParentOfType(leaf, PsiJavaCodeReferenceElement.class);
+            if (reference == null) {
+                return null;
+            }
+            while (reference.getParent() instanceof PsiJavaCodeReferenceElement outer) {
+                reference = outer;
+            }
+            return reference.getQualifiedName();
+        }
+        PsiTypeElement typeElement = PsiTreeUtil.getParentOfType(leaf, PsiTypeElement.class);
+        if (typeElement == null) {
+            return null;
+        }
+        while (typeElement.getParent() instanceof PsiTypeElement outer) {
+            typeElement = outer;
+        }
+        return typeElement.getType().getCanonicalText();
+    }
+}
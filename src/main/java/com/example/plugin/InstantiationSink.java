@@ -0,0 +1,22 @@
+package com.example.plugin;
+
+import java.io.Closeable;
+
+/**
+ * 对象实例化记录的输出目标。记录来自 {@link InstantiationStore}，每行为 {测试文件名, 测试用例, 类名, 是否 mock} 的编号，
+ * 在调用线程上按批依次追加，close() 时写完并释放资源；写入失败只记录日志，不中断流程，由 {@link #hasFailed()} 报告。
+ */
+interface InstantiationSink extends Closeable {
+    /**
+     * 按编号追加 store 中 [from, to) 的行，不为每行还原字符串数组
+     */
+    void appendRows(InstantiationStore store, long from, long to);
+
+    /**
+     * 是否有记录没能写出（或关闭时没能写完），这时输出文件不完整
+     */
+    boolean hasFailed();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,177 @@
+package com.example.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 紧凑的实例化记录存储：文件名、测试用例名和类名经 {@link StringDictionary} 编号，每行只保存三个 int 编号，
+ * mocked 标志按位保存在 long 数组中。堆内最多保留 maxHeapRows 行，写满后整段转存到内存映射的临时文件，
+ * 堆内只剩一段写缓冲、编号字典和标志位。相比每行一个 String[]（外加每行各自的类名字符串和 "true"/"false"），内存约为几分之一。
+ * <p>
+ * 非线程安全：由单个线程写入；写入结束后，多个线程可以同时通过 {@link #forEach} 读取。
+ */
+final class InstantiationStore implements Closeable {
+    private static final Logger logger = Logger.getLogger(InstantiationStore.class.getName());
+
+    private static final int INTS_PER_ROW = 3;
+    private static final int BYTES_PER_ROW = INTS_PER_ROW * Integer.BYTES;
+    // 单个映射段不能超过 2GB
+    private static final int MAX_SEGMENT_ROWS = Integer.MAX_VALUE / BYTES_PER_ROW;
+
+    /**
+     * 按编号访问一行，不创建任何对象
+     */
+    interface RowVisitor {
+        void visit(int suite, int testCase, int className, boolean mocked);
+    }
+
+    private final StringDictionary symbols = new StringDictionary();
+    private final int maxHeapRows;
+    private final Path spillDir;
+    private int[] heapIds;
+    private int heapRows;
+    private long[] mockedBits = new long[16];
+    private long size;
+
+    // 转存的行：第 i 段保存第 i * maxHeapRows 行起的 maxHeapRows 行
+    private final List<IntBuffer> spillSegments = new ArrayList<>();
+    private Path spillFile;
+    private FileChannel spillChannel;
+
+    /**
+     * maxHeapRows 为堆内保留的行数，超出部分转存到 spillDir 下的临时文件
+     */
+    InstantiationStore(int maxHeapRows, File spillDir) {
+        this.maxHeapRows = Math.max(1, Math.min(MAX_SEGMENT_ROWS, maxHeapRows));
+        this.spillDir = spillDir.toPath();
+        this.heapIds = new int[Math.min(this.maxHeapRows, 4096) * INTS_PER_ROW];
+    }
+
+    StringDictionary symbols() {
+        return symbols;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * 追加一行，记录格式为 {测试文件名, 测试用例, 类名, 是否 mock}
+     */
+    void append(String[] record) throws IOException {
+        append(symbols.idOf(record[0]), symbols.idOf(record[1]), symbols.idOf(record[2]), Boolean.parseBoolean(record[3]));
+    }
+
+    /**
+     * 追加一个测试文件的全部记录，文件名只查一次编号
+     */
+    void append(String suite, List<Instantiation> records) throws IOException {
+        int suiteId = symbols.idOf(suite);
+        for (Instantiation record : records) {
+            append(suiteId, symbols.idOf(record.testCase()), symbols.idOf(record.className()), record.mocked());
+        }
+    }
+
+    void append(int suite, int testCase, int className, boolean mocked) throws IOException {
+        if (heapRows == maxHeapRows) {
+            spill();
+        }
+        int[] ids = ensureHeapCapacity();
+        int offset = heapRows * INTS_PER_ROW;
+        ids[offset] = suite;
+        ids[offset + 1] = testCase;
+        ids[offset + 2] = className;
+        heapRows++;
+
+        int word = (int) (size >>> 6);
+        if (word == mockedBits.length) {
+            mockedBits = Arrays.copyOf(mockedBits, word * 2);
+        }
+        if (mocked) {
+            mockedBits[word] |= 1L << size;
+        }
+        size++;
+    }
+
+    // 堆内数组按需增长，直到 maxHeapRows 行
+    private int[] ensureHeapCapacity() {
+        if (heapRows * INTS_PER_ROW == heapIds.length) {
+            int rows = (int) Math.min(maxHeapRows, heapIds.length / INTS_PER_ROW * 2L);
+            heapIds = Arrays.copyOf(heapIds, rows * INTS_PER_ROW);
+        }
+        return heapIds;
+    }
+
+    /**
+     * 把堆内的整段行写入映射文件，之后通过映射缓冲区读取
+     */
+    private void spill() throws IOException {
+        if (spillChannel == null) {
+            Files.createDirectories(spillDir);
+            spillFile = Files.createTempFile(spillDir, "instantiations", ".spill");
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        long position = (long) spillSegments.size() * maxHeapRows * BYTES_PER_ROW;
+        MappedByteBuffer buffer = spillChannel.map(FileChannel.MapMode.READ_WRITE, position, (long) maxHeapRows * BYTES_PER_ROW);
+        IntBuffer segment = buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+        segment.put(0, heapIds, 0, maxHeapRows * INTS_PER_ROW);
+        spillSegments.add(segment);
+        heapRows = 0;
+    }
+
+    /**
+     * 按顺序访问 [from, to) 行
+     */
+    void forEach(long from, long to, RowVisitor visitor) {
+        long spilledRows = (long) spillSegments.size() * maxHeapRows;
+        for (long row = from; row < to; row++) {
+            int suite;
+            int testCase;
+            int className;
+            if (row < spilledRows) {
+                IntBuffer segment = spillSegments.get((int) (row / maxHeapRows));
+                int offset = (int) (row % maxHeapRows) * INTS_PER_ROW;
+                suite = segment.get(offset);
+                testCase = segment.get(offset + 1);
+                className = segment.get(offset + 2);
+            } else {
+                int offset = (int) (row - spilledRows) * INTS_PER_ROW;
+                suite = heapIds[offset];
+                testCase = heapIds[offset + 1];
+                className = heapIds[offset + 2];
+            }
+            boolean mocked = (mockedBits[(int) (row >>> 6)] & (1L << row)) != 0;
+            visitor.visit(suite, testCase, className, mocked);
+        }
+    }
+
+    /**
+     * 关闭并删除转存文件；映射缓冲区在被回收前仍占用文件，删除失败时留到 JVM 退出时再删
+     */
+    @Override
+    public void close() {
+        spillSegments.clear();
+        if (spillChannel == null) {
+            return;
+        }
+        try {
+            spillChannel.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            logger.warning("Failed to delete spill file " + spillFile + ": " + e.getMessage());
+            spillFile.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.plugin;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * object_instantiations.xlsx 的流式写入器。
+ * 只在内存中保留一个固定大小的行窗口，超出的行被刷到临时文件，峰值内存与记录总数无关。
+ */
+class InstantiationXlsxWriter implements InstantiationSink {
+    private static final Logger logger = Logger.getLogger(InstantiationXlsxWriter.class.getName());
+
+    // 内存中保留的行数，超出后旧行写入磁盘临时文件
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    static final String[] HEADER = {"Test Suite", "Test Case", "Class Name", "Mocked"};
+
+    private final File outputFile;
+    private final SXSSFWorkbook workbook;
+    private final SXSSFSheet sheet;
+    private int rowCount;
+    private boolean failed;
+
+    InstantiationXlsxWriter(File outputFile) {
+        this.outputFile = outputFile;
+        this.workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        // 临时文件压缩，避免大项目占用过多磁盘
+        this.workbook.setCompressTempFiles(true);
+        this.sheet = workbook.createSheet("Object Instantiations");
+        appendRow(HEADER);
+    }
+
+    @Override
+    public void appendRows(InstantiationStore store, long from, long to) {
+        StringDictionary symbols = store.symbols();
+        store.forEach(from, to, (suite, testCase, className, mocked) -> {
+            Row row = sheet.createRow(rowCount++);
+            row.createCell(0).setCellValue(symbols.valueOf(suite));
+            row.createCell(1).setCellValue(symbols.valueOf(testCase));
+            row.createCell(2).setCellValue(symbols.valueOf(className));
+            row.createCell(3).setCellValue(String.valueOf(mocked));
+        });
+    }
+
+    private void appendRow(String[] record) {
+        Row row = sheet.createRow(rowCount++);
+        for (int j = 0; j < record.length; j++) {
+            Cell cell = row.createCell(j);
+            cell.setCellValue(record[j]);
+        }
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * 写出 XLSX 文件并删除 POI 的临时文件
+     */
+    @Override
+    public void close() {
+        File parentDir = outputFile.getParentFile();
+        if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+            failed = true;
+            logger.severe("Failed to create directory: " + parentDir.getAbsolutePath());
+        }
+
+        try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+            workbook.write(outputStream);
+            logger.info("XLSX records saved to: " + outputFile.getPath() + " (" + (rowCount - 1) + " rows)");
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Failed to save XLSX records: " + e.getMessage());
+        } finally {
+            workbook.dispose();
+            try {
+                workbook.close();
+            } catch (IOException e) {
+                logger.warning("Failed to close XLSX workbook: " + e.getMessage());
+            }
+        }
+    }
+}
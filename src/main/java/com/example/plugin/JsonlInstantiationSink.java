@@ -0,0 +1,86 @@
+package com.example.plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * object_instantiations.jsonl 的流式写入器，每条记录写成一行，边产生边写出。
+ * 文件名、测试用例名和类名做字典编码：字符串第一次出现时先写一行定义 {"sym":编号,"value":"..."}，
+ * 记录行只引用编号 {"suite":0,"case":1,"class":2,"mocked":true}，读取时按顺序建立编号表即可还原。
+ */
+class JsonlInstantiationSink implements InstantiationSink {
+    private static final Logger logger = Logger.getLogger(JsonlInstantiationSink.class.getName());
+
+    private final File outputFile;
+    private final BufferedWriter writer;
+    private final StringDictionary dictionary = new StringDictionary();
+    // 按编号追加时，记录存储的编号到本文件编号的映射
+    private StringDictionary.Remap remap;
+    private long rowCount;
+    private boolean failed;
+
+    JsonlInstantiationSink(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        Files.createDirectories(outputFile.toPath().toAbsolutePath().getParent());
+        this.writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void appendRows(InstantiationStore store, long from, long to) {
+        if (remap == null || remap.source() != store.symbols()) {
+            remap = dictionary.remapFrom(store.symbols());
+        }
+        try {
+            store.forEach(from, to, (suite, testCase, className, mocked) -> {
+                try {
+                    writeRow(symbol(suite), symbol(testCase), symbol(className), mocked);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            failed = true;
+            logger.severe("Failed to write JSONL records: " + e.getCause().getMessage());
+        }
+    }
+
+    private void writeRow(int suite, int testCase, int className, boolean mocked) throws IOException {
+        writer.write("{\"suite\":" + suite + ",\"case\":" + testCase + ",\"class\":" + className
+                + ",\"mocked\":" + mocked + "}\n");
+        rowCount++;
+    }
+
+    private int symbol(int storeId) throws IOException {
+        int size = dictionary.size();
+        int id = remap.map(storeId);
+        if (id == size) {
+            writeSymbol(id);
+        }
+        return id;
+    }
+
+    private void writeSymbol(int id) throws IOException {
+        writer.write("{\"sym\":" + id + ",\"value\":" + JsonStrings.quote(dictionary.valueOf(id)) + "}\n");
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+            logger.info("JSONL records saved to: " + outputFile.getPath() + " (" + rowCount + " rows, " + dictionary.size() + " symbols)");
+        } catch (IOException e) {
+            failed = true;
+            logger.severe("Failed to save JSONL records: " + e.getMessage());
+        }
+    }
+}
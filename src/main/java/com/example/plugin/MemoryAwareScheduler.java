@@ -0,0 +1,135 @@
+package com.example.plugin;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 全部分片共用的分批协调器：按堆余量决定每批提交多少个文件，并在批次之间施加背压。
+ * 堆使用率达到高水位时下一批缩小到最小批大小；超过临界水位时，等待其他分片正在处理的批次结束并释放后再继续，
+ * 没有其他批次在处理时不再等待，直接以最小批继续。
+ * <p>
+ * 释放由构造参数 releaser 完成：流程中卸下这一批文件的 PSI 和 AST，并清除项目的 PSI 缓存（见 TestFilesPipeline），
+ * 每批结束时执行一次，其他分片正在分析的文件按需重新加载。
+ */
+final class MemoryAwareScheduler {
+    private static final Logger logger = Logger.getLogger(MemoryAwareScheduler.class.getName());
+
+    // 单个测试文件在分析期间的保守内存估计：已加载的 AST、解析缓存和改写结果
+    private static final long ESTIMATED_BYTES_PER_FILE = 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1024;
+    private static final double HIGH_WATERMARK = 0.75;
+    private static final double CRITICAL_WATERMARK = 0.9;
+    private static final long MAX_WAIT_MILLIS = 10_000;
+    // 等待期间检查取消的间隔；等待本身由其他批次结束时唤醒
+    private static final long CANCEL_CHECK_MILLIS = 100;
+
+    private final int minChunkSize;
+    private final Consumer<List<VirtualFile>> releaser;
+
+    private final Object lock = new Object();
+    // 全部分片已提交但尚未结束的文件数
+    private int inFlight;
+    private long finishedChunks;
+
+    /**
+     * minChunkSize 为每个分片的最小批大小，保证每批至少让分到的线程都有活干；releaser 释放一批处理完的文件所占的内存
+     */
+    MemoryAwareScheduler(int minChunkSize, Consumer<List<VirtualFile>> releaser) {
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.releaser = releaser;
+    }
+
+    /**
+     * 开始一批，返回这一批的文件数（不超过 remaining）。堆使用率达到高水位时为最小批大小，
+     * 否则用一半的堆余量除以单文件估计值
+     */
+    int beginChunk(int remaining) {
+        int chunkSize = Math.min(remaining, nextChunkSize());
+        synchronized (lock) {
+            inFlight += chunkSize;
+        }
+        return chunkSize;
+    }
+
+    private int nextChunkSize() {
+        if (usage() >= HIGH_WATERMARK) {
+            return minChunkSize;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long headroom = runtime.maxMemory() - usedBytes(runtime);
+        long chunkSize = headroom / 2 / ESTIMATED_BYTES_PER_FILE;
+        return (int) Math.max(minChunkSize, Math.min(MAX_CHUNK_SIZE, chunkSize));
+    }
+
+    /**
+     * 一批结束（包括异常退出）时调用：释放这一批的文件，唤醒等待中的分片
+     */
+    void finishChunk(List<VirtualFile> files) {
+        try {
+            releaser.accept(files);
+        } finally {
+            synchronized (lock) {
+                inFlight -= files.size();
+                finishedChunks++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 在下一批之前调用：使用率高于临界水位时，等待其他分片的批次结束（它们结束时同样释放），期间响应取消
+     */
+    void awaitHeadroom(ProgressIndicator indicator) {
+        if (usage() <= CRITICAL_WATERMARK) {
+            return;
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(String.format("Heap usage %.0f%% after chunk, waiting for other chunks to finish.", usage() * 100));
+        }
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        while (usage() > CRITICAL_WATERMARK) {
+            if (!awaitOtherChunk(deadline, indicator)) {
+                logger.warning(String.format("Heap usage still at %.0f%%; continuing with minimal chunks.", usage() * 100));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 等待任一其他批次结束；没有其他批次在处理或超时时返回 false
+     */
+    private boolean awaitOtherChunk(long deadline, ProgressIndicator indicator) {
+        synchronized (lock) {
+            long seen = finishedChunks;
+            while (finishedChunks == seen) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (inFlight == 0 || remaining <= 0) {
+                    return false;
+                }
+                indicator.checkCanceled();
+                try {
+                    lock.wait(Math.min(remaining, CANCEL_CHECK_MILLIS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProcessCanceledException(e);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static double usage() {
+        Runtime runtime = Runtime.getRuntime();
+        return usedBytes(runtime) / (double) runtime.maxMemory();
+    }
+
+    private static long usedBytes(Runtime runtime) {
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * 运行统计作为导出阶段的一个输出：与其他格式一样在自己的工作线程上消费发布的批次，统计导出的记录数和 mock 记录数，
+ * close() 时写出 run_metrics.json。合并线程不再在导出结束后串行写统计。
+ */
+final class MetricsSink implements InstantiationSink {
+    private static final Logger logger = Logger.getLogger(MetricsSink.class.getName());
+
+    private final PipelineMetrics metrics;
+    private final File metricsFile;
+    private final String projectName;
+    private boolean failed;
+
+    MetricsSink(PipelineMetrics metrics, File metricsFile, String projectName) {
+        this.metrics = metrics;
+        this.metricsFile = metricsFile;
+        this.projectName = projectName;
+    }
+
+    @Override
+    public void appendRows(InstantiationStore store, long from, long to) {
+        long[] mocked = new long[1];
+        store.forEach(from, to, (suite, testCase, className, isMocked) -> {
+            if (isMocked) {
+                mocked[0]++;
+            }
+        });
+        metrics.recordExported(to - from, mocked[0]);
+    }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        failed = !write(metrics, metricsFile, projectName);
+    }
+
+    /**
+     * 写出运行摘要并记录日志，返回是否写出；导出阶段没有开始时由流程直接调用
+     */
+    static boolean write(PipelineMetrics metrics, File metricsFile, String projectName) {
+        logger.info(String.format("Processed %d test files (%d from cache) at %.1f files/s.",
+                metrics.getFileCount(), metrics.getCacheHits(), metrics.getFilesPerSecond()));
+        try {
+            metrics.writeJson(metricsFile.toPath(), projectName);
+            return true;
+        } catch (IOException e) {
+            logger.severe("Failed to write run metrics: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.plugin;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+
+import java.util.*;
+
+/**
+ * 基于解析的调用识别，规则来自 {@link RuleEngine} 的 replace-call / remove-call（默认是 Mockito / BDDMockito 的入口方法）。
+ * 先按方法名（引用名）快速排除无关调用，再通过 resolve 确认调用的是规则中的类声明的方法，
+ * 不再拼接和比较限定符文本，也不会把 whenReady() 之类的方法误认为 when()。
+ */
+@Service(Service.Level.PROJECT)
+public final class MockitoCallMatcher {
+    /**
+     * 规则中的方法在项目 classpath 上的实际声明：方法名 -> (声明类全限定名 -> 动作)。
+     * fallbackActions（方法名 -> 动作）用于按方法名快速排除，以及和 qualifierNames（规则类的简单名）一起在无法解析时判断
+     */
+    private record EntryPoints(Map<String, Map<String, RuleEngine.CallAction>> actionsByName,
+                               Map<String, RuleEngine.CallAction> fallbackActions,
+                               Set<String> qualifierNames,
+                               boolean resolvable) {
+    }
+
+    private final Project project;
+
+    public MockitoCallMatcher(Project project) {
+        this.project = project;
+    }
+
+    static MockitoCallMatcher getInstance(Project project) {
+        return project.getService(MockitoCallMatcher.class);
+    }
+
+    /**
+     * 判断调用本身是否为 replace-call 规则匹配的调用，如 mock(...) / spy(...)
+     */
+    boolean isMockCall(PsiMethodCallExpression call) {
+        return classifyCall(call) == RuleEngine.CallAction.REPLACE;
+    }
+
+    /**
+     * 判断表达式是否以 replace-call 调用开头，如 mock(Foo.class) 或 Mockito.mock(Foo.class).bar()
+     */
+    boolean startsWithMockCall(PsiExpression expression) {
+        return expression instanceof PsiMethodCallExpression call && classifyCall(rootCall(call)) == RuleEngine.CallAction.REPLACE;
+    }
+
+    /**
+     * 判断调用链是否以 remove-call 调用开头，如 when(a).thenReturn(b)、verify(a).foo()、doReturn(a).when(b).foo()
+     */
+    boolean isRemovedCall(PsiMethodCallExpression call) {
+        return classifyCall(rootCall(call)) == RuleEngine.CallAction.REMOVE;
+    }
+
+    /**
+     * 调用链最左侧的调用，例如 when(a).thenReturn(b) 中的 when(a)
+     */
+    private static PsiMethodCallExpression rootCall(PsiMethodCallExpression call) {
+        PsiMethodCallExpression current = call;
+        while (current.getMethodExpression().getQualifierExpression() instanceof PsiMethodCallExpression qualifierCall) {
+            current = qualifierCall;
+        }
+        return current;
+    }
+
+    private RuleEngine.CallAction classifyCall(PsiMethodCallExpression call) {
+        PsiReferenceExpression methodExpression = call.getMethodExpression();
+        EntryPoints entryPoints = getEntryPoints();
+        RuleEngine.CallAction fallbackAction = entryPoints.fallbackActions().get(methodExpression.getReferenceName());
+        if (fallbackAction == null) {
+            return RuleEngine.CallAction.NONE;
+        }
+
+        PsiMethod method = entryPoints.resolvable() ? call.resolveMethod() : null;
+        if (method != null) {
+            PsiClass containingClass = method.getContainingClass();
+            Map<String, RuleEngine.CallAction> actions = entryPoints.actionsByName().get(method.getName());
+            RuleEngine.CallAction action = containingClass != null && actions != null ? actions.get(containingClass.getQualifiedName()) : null;
+            return action != null ? action : RuleEngine.CallAction.NONE;
+        }
+
+        // 规则中的类不在 classpath 上或无法解析时，按静态导入或类名限定符判断
+        PsiExpression qualifier = methodExpression.getQualifierExpression();
+        return qualifier == null
+                || qualifier instanceof PsiReferenceExpression reference && entryPoints.qualifierNames().contains(reference.getReferenceName())
+                ? fallbackAction : RuleEngine.CallAction.NONE;
+    }
+
+    /**
+     * 入口方法集合只在项目依赖或规则变化时重新计算
+     */
+    private EntryPoints getEntryPoints() {
+        RuleEngine ruleEngine = RuleEngine.getInstance(project);
+        return CachedValuesManager.getManager(project).getCachedValue(project, () ->
+                CachedValueProvider.Result.create(computeEntryPoints(ruleEngine.getRules()),
+                        ProjectRootManager.getInstance(project), ruleEngine.getModificationTracker()));
+    }
+
+    private EntryPoints computeEntryPoints(RuleEngine.RuleSet rules) {
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+        Map<String, Map<String, RuleEngine.CallAction>> actionsByName = new HashMap<>();
+        Map<String, RuleEngine.CallAction> fallbackActions = new HashMap<>();
+        Set<String> qualifierNames = new HashSet<>();
+        boolean resolvable = false;
+
+        for (RuleEngine.CallRule rule : rules.callRules()) {
+            fallbackActions.putIfAbsent(rule.methodName(), rule.action());
+            qualifierNames.add(StringUtil.getShortName(rule.className()));
+
+            PsiClass ruleClass = facade.findClass(rule.className(), scope);
+            if (ruleClass == null) {
+                continue;
+            }
+            resolvable = true;
+            // 方法可能声明在规则类的父类中，如 BDDMockito.mock 实际声明在 Mockito
+            for (PsiMethod method : ruleClass.findMethodsByName(rule.methodName(), true)) {
+                PsiClass declaringClass = method.getContainingClass();
+                if (declaringClass != null && declaringClass.getQualifiedName() != null) {
+                    actionsByName.computeIfAbsent(rule.methodName(), name -> new HashMap<>())
+                            .putIfAbsent(declaringClass.getQualifiedName(), rule.action());
+                }
+            }
+        }
+        return new EntryPoints(actionsByName, fallbackActions, qualifierNames, resolvable);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.plugin;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * 输出子系统：分析结果放入有界队列，由专用 I/O 线程写盘。
+ * test_files_list.csv 在整个运行期间保持一个打开的 UTF-8 缓冲写入器；改写后的文件按批通过 NIO 写出，或以修改列表写入归档；
+ * 分片输出时改写后的文件按相对源码根的路径保存，不同包中的同名测试类不会互相覆盖；
+ * 新结果同时写入增量缓存和去重存储，这些磁盘 I/O 都不占用读锁。队列满时提交方阻塞，避免结果在内存中堆积；
+ * I/O 线程异常退出后，提交和关闭立即失败，不会一直等待。
+ */
+class OutputWriter implements Closeable {
+    private static final Logger logger = Logger.getLogger(OutputWriter.class.getName());
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int BATCH_SIZE = 64;
+
+    // 队列结束标记
+    private static final TestFileResult END = new TestFileResult(null, null, null, null, null, null, List.of(), List.of(), false, null);
+
+    private final Path modifiedResultsDir;
+    private final String sourceRootPath;
+    // 只在 I/O 线程中访问：已创建的包目录
+    private final Set<Path> createdDirs = new HashSet<>();
+    private final EditArchiveWriter archiveWriter;
+    private final ResultCache cache;
+    private final DedupStore dedupStore;
+    private final PipelineMetrics metrics;
+    private final BufferedWriter csvWriter;
+    private final BlockingQueue<TestFileResult> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ExecutorService ioExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("CodeParser Output Writer", 1);
+    private final Future<?> drainTask;
+    // I/O 线程异常退出的原因
+    private volatile Throwable drainFailure;
+
+    /**
+     * 清空或重新创建 CSV 文件并写入表头，然后启动 I/O 线程；cache、dedupStore 为 null 时不写缓存、去重存储
+     */
+    OutputWriter(PipelineConfig config, ResultCache cache, DedupStore dedupStore, PipelineMetrics metrics) throws IOException {
+        this.modifiedResultsDir = config.getModifiedResultsDir().toPath();
+        this.sourceRootPath = config.getSourceRootPath();
+        this.cache = cache;
+        this.dedupStore = dedupStore;
+        this.metrics = metrics;
+
+        // 确保目标目录存在
+        Path csvPath = config.getTestFilesCsvFile().toPath();
+        Files.createDirectories(csvPath.toAbsolutePath().getParent());
+        if (config.getStage1Format() == PipelineConfig.Stage1Format.EDIT_ARCHIVE) {
+            this.archiveWriter = new EditArchiveWriter(config.getStage1ArchiveFile());
+        } else {
+            this.archiveWriter = null;
+            Files.createDirectories(modifiedResultsDir);
+        }
+
+        this.csvWriter = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8);
+        csvWriter.write("\"Test File Name\",\"Test File Path\",\"CUT\",\"CUT Path\"\n");
+        this.drainTask = ioExecutor.submit(this::drain);
+    }
+
+    /**
+     * 提交一个文件的结果；队列已满时阻塞直到 I/O 线程跟上。I/O 线程已退出时抛出 UncheckedIOException
+     */
+    void submit(TestFileResult result) {
+        try {
+            checkDrainAlive();
+            while (!queue.offer(result, 100, TimeUnit.MILLISECONDS)) {
+                checkDrainAlive();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        }
+    }
+
+    private void checkDrainAlive() {
+        if (drainTask.isDone()) {
+            throw new UncheckedIOException("Output writer has stopped", new IOException(drainFailure));
+        }
+    }
+
+    /**
+     * I/O 线程是否异常退出，这时部分结果没有写出
+     */
+    boolean hasFailed() {
+        return drainFailure != null;
+    }
+
+    private void drain() {
+        try {
+            drainQueue();
+        } catch (RuntimeException | Error e) {
+            drainFailure = e;
+            throw e;
+        }
+    }
+
+    private void drainQueue() {
+        List<TestFileResult> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (TestFileResult result : batch) {
+                    if (result == END) {
+                        return;
+                    }
+                    try {
+                        write(result);
+                    } catch (RuntimeException e) {
+                        logger.severe("Failed to write results for " + result.fileName() + ": " + e);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            drainFailure = e;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(TestFileResult result) {
+        long start = System.nanoTime();
+        // 记录测试文件信息
+        try {
+            // 与合并步骤读取的格式一致：字段内的引号转义，行尾固定为 \n
+            csvWriter.write(CsvRows.format(new String[]{result.fileName(), result.filePath(), result.cutName(), result.cutPath()}));
+            csvWriter.write('\n');
+        } catch (IOException e) {
+            logger.severe("Failed to write to CSV: " + e.getMessage());
+        }
+
+        // 保存修改后的文件，或只保存修改列表
+        try {
+            if (archiveWriter != null) {
+                archiveWriter.write(result.fileName(), relativeOutputPath(result), result.filePath(), result.contentHash(), result.edits());
+            } else {
+                Files.writeString(modifiedFilePath(result), result.modifiedContent(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to save modified file: " + e.getMessage());
+        }
+
+        if (cache != null && !result.fromCache()) {
+            cache.store(result.filePath(), result.contentHash(), result.modifiedContent(), result.edits(), result.records());
+        }
+        if (dedupStore != null && result.dedupKey() != null) {
+            dedupStore.store(result.dedupKey(), result.edits(), result.records());
+        }
+        metrics.record(PipelineMetrics.Phase.OUTPUT_WRITE, start);
+    }
+
+    private Path modifiedFilePath(TestFileResult result) throws IOException {
+        Path path = modifiedResultsDir.resolve(relativeOutputPath(result));
+        Path parent = path.getParent();
+        if (createdDirs.add(parent)) {
+            Files.createDirectories(parent);
+        }
+        return path;
+    }
+
+    /**
+     * 改写结果相对输出目录的路径：分片输出时为相对源码根的路径，否则为文件名；修改归档中也保存这个路径，还原时使用同样的布局
+     */
+    private String relativeOutputPath(TestFileResult result) {
+        if (sourceRootPath == null || !result.filePath().startsWith(sourceRootPath + "/")) {
+            return result.fileName();
+        }
+        return result.filePath().substring(sourceRootPath.length() + 1);
+    }
+
+    /**
+     * 等待队列中剩余的结果写完，然后关闭 CSV；I/O 线程已退出时不再等待
+     */
+    @Override
+    public void close() {
+        try {
+            while (!drainTask.isDone() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // 等待 I/O 线程腾出位置
+            }
+            drainTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drainTask.cancel(true);
+        } catch (ExecutionException e) {
+            logger.severe("Output writer failed: " + e.getCause());
+        } finally {
+            ioExecutor.shutdown();
+            try {
+                csvWriter.close();
+            } catch (IOException e) {
+                logger.severe("Failed to close CSV: " + e.getMessage());
+            }
+            if (archiveWriter != null) {
+                archiveWriter.close();
+            }
+        }
+    }
+}
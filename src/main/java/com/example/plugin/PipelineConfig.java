@@ -0,0 +1,244 @@
+package com.example.plugin;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 一次批处理运行的配置：输出目录布局和运行选项
+ */
+final class PipelineConfig {
+    /**
+     * 改写引擎：PSI_COPY 解析临时副本并修改 PSI；TEXT_OFFSETS 只读分析已加载的 PSI 并按偏移改写文本
+     */
+    enum RewriteEngine {
+        PSI_COPY,
+        TEXT_OFFSETS
+    }
+
+    /**
+     * 对象实例化记录的输出格式
+     */
+    enum OutputFormat {
+        XLSX,
+        JSONL,
+        ARROW
+    }
+
+    /**
+     * 改写结果的保存方式：FILES 每个测试文件保存一份完整副本；
+     * EDIT_ARCHIVE 只把相对原文的修改列表和原文哈希压缩进一个归档，需要时用 {@link Stage1Rebuilder} 还原。
+     * 两种方式都按分片写在 shards/&lt;分片目录&gt;/ 下，合并步骤不合并它们
+     */
+    enum Stage1Format {
+        FILES,
+        EDIT_ARCHIVE
+    }
+
+    private final File resultRoot;
+    private File cacheDir;
+    private File dedupDir;
+    // 分片配置才有：分片对应的源码根目录，改写后的文件按相对它的路径保存
+    private String sourceRootPath;
+    private boolean incremental = true;
+    private RewriteEngine rewriteEngine = RewriteEngine.TEXT_OFFSETS;
+    private Stage1Format stage1Format = Stage1Format.FILES;
+    private Set<OutputFormat> outputFormats = EnumSet.of(OutputFormat.XLSX, OutputFormat.JSONL);
+    private int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private int shardParallelism = 2;
+    private int recordStoreHeapRows = 1 << 20;
+    private Set<String> shardFilter = Set.of();
+
+    PipelineConfig(File resultRoot) {
+        this.resultRoot = resultRoot;
+        this.cacheDir = new File(resultRoot, ".cache");
+    }
+
+    /**
+     * 单个分片的配置：输出写到 shards/&lt;分片目录&gt;，运行选项和增量缓存与整体配置共用
+     */
+    PipelineConfig forShard(Shard shard) {
+        PipelineConfig shardConfig = new PipelineConfig(new File(getShardsDir(), shard.dirName()))
+                .setIncremental(incremental)
+                .setRewriteEngine(rewriteEngine)
+                .setStage1Format(stage1Format)
+                .setWorkerCount(workerCount)
+                .setRecordStoreHeapRows(recordStoreHeapRows);
+        shardConfig.cacheDir = cacheDir;
+        shardConfig.sourceRootPath = shard.sourceRootPath();
+        return shardConfig;
+    }
+
+    File getResultRoot() {
+        return resultRoot;
+    }
+
+    File getShardsDir() {
+        return new File(resultRoot, "shards");
+    }
+
+    /**
+     * 分片的部分实例化记录，合并时读取；表头和行格式与 object_instantiations.xlsx 相同
+     */
+    File getInstantiationPartFile() {
+        return new File(resultRoot, "object_instantiations.part.csv");
+    }
+
+    /**
+     * 分片成功完成后写出的标记文件，没有标记的分片不参与合并
+     */
+    File getShardCompleteMarker() {
+        return new File(resultRoot, "shard.complete");
+    }
+
+    String getSourceRootPath() {
+        return sourceRootPath;
+    }
+
+    File getModifiedResultsDir() {
+        return new File(resultRoot, "parsed_tests_stage1");
+    }
+
+    File getStage1ArchiveFile() {
+        return new File(resultRoot, "parsed_tests_stage1.zip");
+    }
+
+    File getXlsxOutputFile() {
+        return new File(resultRoot, "object_instantiations.xlsx");
+    }
+
+    /**
+     * 从实例化索引导出的记录，与分析流程写出的 object_instantiations.xlsx 分开保存
+     */
+    File getIndexedXlsxOutputFile() {
+        return new File(resultRoot, "object_instantiations_indexed.xlsx");
+    }
+
+    File getJsonlOutputFile() {
+        return new File(resultRoot, "object_instantiations.jsonl");
+    }
+
+    File getArrowOutputFile() {
+        return new File(resultRoot, "object_instantiations.arrow");
+    }
+
+    File getArrowDictionaryFile() {
+        return new File(resultRoot, "object_instantiations.dictionary.arrow");
+    }
+
+    File getTestFilesCsvFile() {
+        return new File(resultRoot, "test_files_list.csv");
+    }
+
+    File getMetricsFile() {
+        return new File(resultRoot, "run_metrics.json");
+    }
+
+    File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * 跨项目共用的去重存储目录（见 {@link DedupStore}），为 null 时不去重
+     */
+    File getDedupDir() {
+        return dedupDir;
+    }
+
+    PipelineConfig setDedupDir(File dedupDir) {
+        this.dedupDir = dedupDir;
+        return this;
+    }
+
+    /**
+     * 增量模式：内容未变化的测试文件直接复用缓存结果
+     */
+    boolean isIncremental() {
+        return incremental;
+    }
+
+    PipelineConfig setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    RewriteEngine getRewriteEngine() {
+        return rewriteEngine;
+    }
+
+    PipelineConfig setRewriteEngine(RewriteEngine rewriteEngine) {
+        this.rewriteEngine = rewriteEngine;
+        return this;
+    }
+
+    Stage1Format getStage1Format() {
+        return stage1Format;
+    }
+
+    PipelineConfig setStage1Format(Stage1Format stage1Format) {
+        this.stage1Format = stage1Format;
+        return this;
+    }
+
+    Set<OutputFormat> getOutputFormats() {
+        return outputFormats;
+    }
+
+    PipelineConfig setOutputFormats(Set<OutputFormat> outputFormats) {
+        this.outputFormats = outputFormats.isEmpty() ? EnumSet.noneOf(OutputFormat.class) : EnumSet.copyOf(outputFormats);
+        return this;
+    }
+
+    /**
+     * 分析阶段的工作线程数；多个项目同时运行时应按项目数分摊 CPU 核数
+     */
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    PipelineConfig setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+        return this;
+    }
+
+    /**
+     * 同时处理的分片数；分片共用分析线程池，这里只决定有多少个分片的输出同时进行
+     */
+    int getShardParallelism() {
+        return shardParallelism;
+    }
+
+    PipelineConfig setShardParallelism(int shardParallelism) {
+        this.shardParallelism = Math.max(1, shardParallelism);
+        return this;
+    }
+
+    /**
+     * 只处理这些分片（分片 ID，见 {@link Shard#id()}），用于单独重跑失败的分片；为空时处理全部分片
+     */
+    boolean includesShard(Shard shard) {
+        return shardFilter.isEmpty() || shardFilter.contains(shard.id());
+    }
+
+    boolean hasShardFilter() {
+        return !shardFilter.isEmpty();
+    }
+
+    PipelineConfig setShardFilter(Set<String> shardIds) {
+        this.shardFilter = Set.copyOf(shardIds);
+        return this;
+    }
+
+    /**
+     * 每个分片等待发布的记录批次在堆内最多保留的行数（每行 12 字节），超出后新批次转存到内存映射的临时文件；
+     * 之前运行留下的分片读入时的记录存储同样以此为上限
+     */
+    int getRecordStoreHeapRows() {
+        return recordStoreHeapRows;
+    }
+
+    PipelineConfig setRecordStoreHeapRows(int recordStoreHeapRows) {
+        this.recordStoreHeapRows = Math.max(1, recordStoreHeapRows);
+        return this;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.plugin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次流程运行的计数器和各阶段耗时直方图，可被分析线程和 I/O 线程并发更新。
+ * 直方图按微秒取 2 的幂分桶，更新只有几次原子加法，不分配对象；运行结束时写成 run_metrics.json。
+ */
+final class PipelineMetrics {
+    enum Phase {
+        DISCOVERY,
+        CLASS_MAP,
+        CUT_LOOKUP,
+        PSI_LOAD,
+        CACHE_LOOKUP,
+        REWRITE,
+        OUTPUT_WRITE
+    }
+
+    private static final int SLOWEST_FILE_COUNT = 20;
+
+    private record FileTiming(String path, long nanos) {
+    }
+
+    /**
+     * 单个阶段的样本数、总耗时、最大值和 log2 直方图
+     */
+    private static final class PhaseStats {
+        private static final int BUCKETS = 40;
+
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        // 第 i 个桶统计耗时小于 2^i 微秒的样本
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            long micros = nanos / 1000;
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        // 直方图近似分位数：返回包含该分位的桶上界（微秒）
+        long percentileMicros(double percentile) {
+            long total = count.sum();
+            long threshold = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder dedupHits = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    // 导出阶段实际发布给各输出的记录数，由统计输出在导出线程上累加
+    private final LongAdder exportedRecords = new LongAdder();
+    private final LongAdder exportedMocked = new LongAdder();
+    // 按耗时升序的小顶堆，只保留最慢的若干个文件
+    private final PriorityQueue<FileTiming> slowestFiles = new PriorityQueue<>(Comparator.comparingLong(FileTiming::nanos));
+    private final long startNanos = System.nanoTime();
+
+    PipelineMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+    }
+
+    /**
+     * 记录一个阶段样本，startNanos 为阶段开始时的 System.nanoTime()
+     */
+    void record(Phase phase, long startNanos) {
+        phases.get(phase).add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一个已分析完成的文件及其总耗时
+     */
+    void recordFile(String path, long startNanos, int recordCount, boolean fromCache) {
+        long nanos = System.nanoTime() - startNanos;
+        files.increment();
+        records.add(recordCount);
+        if (fromCache) {
+            cacheHits.increment();
+        }
+        synchronized (slowestFiles) {
+            if (slowestFiles.size() < SLOWEST_FILE_COUNT) {
+                slowestFiles.add(new FileTiming(path, nanos));
+            } else if (slowestFiles.peek().nanos() < nanos) {
+                slowestFiles.poll();
+                slowestFiles.add(new FileTiming(path, nanos));
+            }
+        }
+    }
+
+    /**
+     * 记录一个从去重存储复用结果、没有重新改写的文件
+     */
+    void recordDedupHit() {
+        dedupHits.increment();
+    }
+
+    /**
+     * 记录一批已发布给各输出的记录，mocked 为其中 mock 的记录数
+     */
+    void recordExported(long rows, long mocked) {
+        exportedRecords.add(rows);
+        exportedMocked.add(mocked);
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    long getFileCount() {
+        return files.sum();
+    }
+
+    long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    double getFilesPerSecond() {
+        return files.sum() * 1_000_000_000.0 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 写出运行摘要：总体计数、吞吐量、各阶段统计和最慢的文件
+     */
+    void writeJson(Path path, String projectName) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        long wallNanos = System.nanoTime() - startNanos;
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"project\": " + JsonStrings.quote(projectName) + ",\n");
+            writer.write("  \"files\": " + files.sum() + ",\n");
+            writer.write("  \"cacheHits\": " + cacheHits.sum() + ",\n");
+            writer.write("  \"dedupHits\": " + dedupHits.sum() + ",\n");
+            writer.write("  \"failures\": " + failures.sum() + ",\n");
+            writer.write("  \"records\": " + records.sum() + ",\n");
+            writer.write("  \"exportedRecords\": " + exportedRecords.sum() + ",\n");
+            writer.write("  \"exportedMocked\": " + exportedMocked.sum() + ",\n");
+            writer.write("  \"wallTimeMs\": " + wallNanos / 1_000_000 + ",\n");
+            writer.write(String.format(Locale.ROOT, "  \"filesPerSecond\": %.2f,%n", getFilesPerSecond()));
+
+            writer.write("  \"phases\": {\n");
+            Phase[] values = Phase.values();
+            for (int p = 0; p < values.length; p++) {
+                PhaseStats stats = phases.get(values[p]);
+                long count = stats.count.sum();
+                writer.write("    " + JsonStrings.quote(values[p].name().toLowerCase(Locale.ROOT)) + ": {");
+                writer.write("\"count\": " + count);
+                writer.write(", \"totalMs\": " + stats.totalNanos.sum() / 1_000_000);
+                writer.write(", \"meanUs\": " + (count == 0 ? 0 : stats.totalNanos.sum() / count / 1000));
+                writer.write(", \"maxUs\": " + stats.maxNanos.get() / 1000);
+                writer.write(", \"p50Us\": " + stats.percentileMicros(0.5));
+                writer.write(", \"p90Us\": " + stats.percentileMicros(0.9));
+                writer.write(", \"p99Us\": " + stats.percentileMicros(0.99));
+                writer.write(", \"histogramUs\": {");
+                boolean first = true;
+                for (int i = 0; i < stats.histogram.length(); i++) {
+                    long bucket = stats.histogram.get(i);
+                    if (bucket > 0) {
+                        writer.write((first ? "" : ", ") + "\"<" + (1L << i) + "\": " + bucket);
+                        first = false;
+                    }
+                }
+                writer.write("}}" + (p < values.length - 1 ? "," : "") + "\n");
+            }
+            writer.write("  },\n");
+
+            List<FileTiming> slowest;
+            synchronized (slowestFiles) {
+                slowest = new ArrayList<>(slowestFiles);
+            }
+            slowest.sort(Comparator.comparingLong(FileTiming::nanos).reversed());
+            writer.write("  \"slowestFiles\": [\n");
+            for (int i = 0; i < slowest.size(); i++) {
+                FileTiming timing = slowest.get(i);
+                writer.write("    {\"path\": " + JsonStrings.quote(timing.path()) + ", \"ms\": " + timing.nanos() / 1_000_000 + "}"
+                        + (i < slowest.size() - 1 ? "," : "") + "\n");
+            }
+            writer.write("  ]\n");
+            writer.write("}\n");
+        }
+    }
+}
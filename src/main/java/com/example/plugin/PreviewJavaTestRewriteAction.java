@@ -0,0 +1,36 @@
+package com.example.plugin;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.logging.Logger;
+
+/**
+ * 在编辑器中预览当前测试文件的改写结果，随编辑实时更新，不写磁盘；写出 Modified_&lt;name&gt;.java 见 {@link ModifyJavaTestASTAction}
+ */
+public class PreviewJavaTestRewriteAction extends AnAction {
+    private static final Logger logger = Logger.getLogger(PreviewJavaTestRewriteAction.class.getName());
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        if (project == null) {
+            logger.warning("No project is open.");
+            return;
+        }
+
+        // 获取当前选中的文件
+        VirtualFile file = event.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (file == null || !"java".equals(file.getExtension())) {
+            logger.warning("Selected file is not a Java file.");
+            return;
+        }
+
+        // 打开预览，之后的重算在后台进行
+        TestRewritePreview.getInstance(project).show(file);
+    }
+}
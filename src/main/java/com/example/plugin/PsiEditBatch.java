@@ -0,0 +1,124 @@
+package com.example.plugin;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 一个文件的待执行 PSI 修改。分析阶段只记录修改，最后在一次写命令中全部执行，
+ * 避免每处修改都单独获取写锁、生成撤销记录和提交 PSI。
+ */
+class PsiEditBatch {
+    private static final Logger logger = Logger.getLogger(PsiEditBatch.class.getName());
+
+    enum Kind {
+        DELETE,
+        REPLACE_EXPRESSION,
+        REPLACE_FIELD
+    }
+
+    /**
+     * 单个修改：删除 target，或用 replacementText 生成的新元素替换 target
+     */
+    record Edit(Kind kind, PsiElement target, String replacementText) {
+    }
+
+    private final List<Edit> edits = new ArrayList<>();
+    private final Set<PsiElement> targets = new HashSet<>();
+
+    void delete(PsiElement element) {
+        add(new Edit(Kind.DELETE, element, null));
+    }
+
+    void replaceExpression(PsiExpression expression, String replacementText) {
+        add(new Edit(Kind.REPLACE_EXPRESSION, expression, replacementText));
+    }
+
+    void replaceField(PsiField field, String replacementText) {
+        add(new Edit(Kind.REPLACE_FIELD, field, replacementText));
+    }
+
+    private void add(Edit edit) {
+        if (targets.add(edit.target())) {
+            edits.add(edit);
+        }
+    }
+
+    /**
+     * 该元素是否已经计划被删除或替换；其子树不需要再分析
+     */
+    boolean isTarget(PsiElement element) {
+        return targets.contains(element);
+    }
+
+    List<Edit> getEdits() {
+        return Collections.unmodifiableList(edits);
+    }
+
+    /**
+     * 执行全部修改。物理文件只使用一次写命令；临时副本是非物理 PSI，直接在当前读操作中修改
+     * （在持有读锁的工作线程里调用写命令会死锁）。
+     */
+    void apply(Project project) {
+        if (edits.isEmpty()) {
+            return;
+        }
+
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        Runnable applyAll = () -> {
+            for (Edit edit : edits) {
+                applyEdit(factory, edit);
+            }
+        };
+
+        if (edits.get(0).target().isPhysical()) {
+            WriteCommandAction.runWriteCommandAction(project, applyAll);
+        } else {
+            applyAll.run();
+        }
+    }
+
+    /**
+     * 把修改转换成原文中按偏移升序、互不重叠的区间替换，供文本改写引擎一次遍历原文生成结果，
+     * 不需要 PSI 副本，也不需要为替换内容创建 PSI 元素。必须在修改 PSI 之前调用
+     */
+    List<TextEdit> toTextEdits() {
+        List<Edit> ordered = new ArrayList<>(edits);
+        ordered.sort(Comparator.comparingInt(edit -> edit.target().getTextRange().getStartOffset()));
+
+        List<TextEdit> textEdits = new ArrayList<>(ordered.size());
+        int cursor = 0;
+        for (Edit edit : ordered) {
+            TextRange range = edit.target().getTextRange();
+            // 落在已替换区间内的修改被外层修改覆盖
+            if (range.getStartOffset() < cursor) {
+                continue;
+            }
+            String replacement = edit.replacementText() != null ? edit.replacementText() : "";
+            textEdits.add(new TextEdit(range.getStartOffset(), range.getLength(), replacement));
+            cursor = range.getEndOffset();
+        }
+        return textEdits;
+    }
+
+    private void applyEdit(PsiElementFactory factory, Edit edit) {
+        PsiElement target = edit.target();
+        if (!target.isValid()) {
+            return;
+        }
+
+        try {
+            switch (edit.kind()) {
+                case DELETE -> target.delete();
+                case REPLACE_EXPRESSION -> target.replace(factory.createExpressionFromText(edit.replacementText(), null));
+                case REPLACE_FIELD -> target.replace(factory.createFieldFromText(edit.replacementText(), target));
+            }
+        } catch (Exception e) {
+            logger.severe("Failed to apply " + edit.kind() + " to: " + target.getText() + ". Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.plugin;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 增量模式使用的磁盘缓存：按 文件路径 + 内容哈希 保存每个测试文件的改写结果和实例化记录。
+ * 每个源文件对应缓存目录中的一个条目文件，可被多个工作线程同时读取；多个分片或共用缓存目录的多个批处理可以同时写入。
+ */
+class ResultCache {
+    private static final Logger logger = Logger.getLogger(ResultCache.class.getName());
+
+    // 改写逻辑变化时递增，旧缓存条目自动失效
+    private static final int CACHE_VERSION = 8;
+
+    private final File cacheDir;
+    private final String rulesFingerprint;
+
+    /**
+     * rulesFingerprint 标识当前改写规则和改写引擎，用不同规则或引擎生成的条目不会被复用
+     */
+    ResultCache(File cacheDir, String rulesFingerprint) {
+        this.cacheDir = cacheDir;
+        this.rulesFingerprint = rulesFingerprint;
+    }
+
+    /**
+     * 缓存条目：改写后的内容、相对原文的修改列表和实例化记录
+     */
+    record Entry(String modifiedContent, List<TextEdit> edits, List<Instantiation> records) {
+    }
+
+    static String contentHash(CharSequence content) {
+        return sha256(content.toString());
+    }
+
+    /**
+     * 是否存在该路径的缓存条目（不检查内容是否仍然匹配）
+     */
+    boolean hasEntry(String filePath) {
+        return entryFile(filePath).isFile();
+    }
+
+    /**
+     * 查找路径和内容哈希都匹配的缓存条目，不存在或已过期时返回 null
+     */
+    Entry load(String filePath, String contentHash) {
+        File entryFile = entryFile(filePath);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+            if (in.readInt() != CACHE_VERSION || !rulesFingerprint.equals(in.readUTF())
+                    || !filePath.equals(in.readUTF()) || !contentHash.equals(in.readUTF())) {
+                return null;
+            }
+            String modifiedContent = readLongString(in);
+            int editCount = in.readInt();
+            List<TextEdit> edits = new ArrayList<>(editCount);
+            for (int i = 0; i < editCount; i++) {
+                edits.add(new TextEdit(in.readInt(), in.readInt(), in.readUTF()));
+            }
+            int rowCount = in.readInt();
+            List<Instantiation> records = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                records.add(new Instantiation(in.readUTF(), in.readUTF(), in.readBoolean()));
+            }
+            return new Entry(modifiedContent, edits, records);
+        } catch (IOException e) {
+            logger.warning("Failed to read cache entry for " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存条目；先写临时文件再原子替换，读线程不会看到写了一半的条目。
+     * 临时文件名每次唯一，同时写同一条目的多个写入方互不干扰，最后一次替换生效
+     */
+    void store(String filePath, String contentHash, String modifiedContent, List<TextEdit> edits, List<Instantiation> records) {
+        File entryFile = entryFile(filePath);
+        Path tempFile;
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            tempFile = Files.createTempFile(cacheDir.toPath(), entryFile.getName(), ".tmp");
+        } catch (IOException e) {
+            logger.severe("Failed to create cache entry for " + filePath + ": " + e.getMessage());
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(CACHE_VERSION);
+            out.writeUTF(rulesFingerprint);
+            out.writeUTF(filePath);
+            out.writeUTF(contentHash);
+            writeLongString(out, modifiedContent);
+            out.writeInt(edits.size());
+            for (TextEdit edit : edits) {
+                out.writeInt(edit.offset());
+                out.writeInt(edit.length());
+                out.writeUTF(edit.replacement());
+            }
+            out.writeInt(records.size());
+            for (Instantiation record : records) {
+                out.writeUTF(record.testCase());
+                out.writeUTF(record.className());
+                out.writeBoolean(record.mocked());
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to write cache entry for " + filePath + ": " + e.getMessage());
+            tempFile.toFile().delete();
+            return;
+        }
+
+        try {
+            Files.move(tempFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.severe("Failed to commit cache entry for " + filePath + ": " + e.getMessage());
+            tempFile.toFile().delete();
+        }
+    }
+
+    private File entryFile(String filePath) {
+        return new File(cacheDir, sha256(filePath) + ".bin");
+    }
+
+    // writeUTF 限制 64KB，文件内容用长度前缀的 UTF-8 字节保存
+    private static void writeLongString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readLongString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
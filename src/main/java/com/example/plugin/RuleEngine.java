@@ -0,0 +1,172 @@
+package com.example.plugin;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SimpleModificationTracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 改写规则：需要过滤的类型，以及需要替换或删除的调用。
+ * 规则来自 &lt;项目根目录&gt;/.codeparser/rules.txt，不存在时使用插件自带的 default-rules.txt（格式见该文件）。
+ * 规则在第一次使用时编译，每次运行开始时若配置文件有变化则重新编译，并清空依赖规则的缓存。
+ */
+@Service(Service.Level.PROJECT)
+public final class RuleEngine {
+    private static final Logger logger = Logger.getLogger(RuleEngine.class.getName());
+
+    static final String PROJECT_RULES_PATH = ".codeparser/rules.txt";
+    private static final String DEFAULT_RULES_RESOURCE = "/codeparser/default-rules.txt";
+    private static final String INCLUDE_DEFAULTS = "@defaults";
+
+    enum CallAction {
+        NONE,
+        // 视为对象实例化，记录并替换为伪代码
+        REPLACE,
+        // 删除所在语句
+        REMOVE
+    }
+
+    record CallRule(String className, String methodName, CallAction action) {
+    }
+
+    /**
+     * 编译后的规则快照，只读；fingerprint 是规则文本的哈希，规则变化时依赖规则的缓存结果随之失效
+     */
+    record RuleSet(TypeFilter typeFilter, List<CallRule> callRules, String fingerprint) {
+    }
+
+    private final Project project;
+    // 规则重新编译时递增，供按规则计算的缓存失效
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+    private volatile RuleSet rules;
+    private volatile long loadedStamp = Long.MIN_VALUE;
+
+    public RuleEngine(Project project) {
+        this.project = project;
+    }
+
+    static RuleEngine getInstance(Project project) {
+        return project.getService(RuleEngine.class);
+    }
+
+    RuleSet getRules() {
+        if (rules == null) {
+            reloadIfChanged();
+        }
+        return rules;
+    }
+
+    SimpleModificationTracker getModificationTracker() {
+        return modificationTracker;
+    }
+
+    /**
+     * 配置文件有变化（或第一次调用）时重新编译规则；应在运行开始时调用，而不是在逐节点的检查中调用
+     */
+    synchronized void reloadIfChanged() {
+        Path projectRules = getProjectRulesFile();
+        long stamp = projectRules != null && Files.isRegularFile(projectRules) ? lastModified(projectRules) : -1;
+        if (rules != null && stamp == loadedStamp) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<>();
+        String source;
+        try {
+            if (stamp >= 0) {
+                source = projectRules.toString();
+                for (String line : Files.readAllLines(projectRules, StandardCharsets.UTF_8)) {
+                    if (line.trim().equals(INCLUDE_DEFAULTS)) {
+                        lines.addAll(readDefaultRules());
+                    } else {
+                        lines.add(line);
+                    }
+                }
+            } else {
+                source = DEFAULT_RULES_RESOURCE;
+                lines.addAll(readDefaultRules());
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to read rules, keeping previous rules: " + e.getMessage());
+            if (rules == null) {
+                rules = new RuleSet(new TypeFilter(), List.of(), "");
+            }
+            return;
+        }
+
+        rules = compile(lines, source);
+        loadedStamp = stamp;
+        modificationTracker.incModificationCount();
+        TypeClassifier.getInstance(project).clearCache();
+        logger.info("Loaded rules from " + source + " (" + rules.callRules().size() + " call rules).");
+    }
+
+    private Path getProjectRulesFile() {
+        String basePath = project.getBasePath();
+        return basePath != null ? Paths.get(basePath, PROJECT_RULES_PATH) : null;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static List<String> readDefaultRules() throws IOException {
+        try (InputStream stream = RuleEngine.class.getResourceAsStream(DEFAULT_RULES_RESOURCE)) {
+            if (stream == null) {
+                throw new IOException("Missing bundled rules: " + DEFAULT_RULES_RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            return reader.lines().toList();
+        }
+    }
+
+    /**
+     * 逐行编译规则；格式错误的行记录警告后跳过
+     */
+    private static RuleSet compile(List<String> lines, String source) {
+        TypeFilter typeFilter = new TypeFilter();
+        List<CallRule> callRules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String keyword = space < 0 ? line : line.substring(0, space);
+            String argument = space < 0 ? "" : line.substring(space + 1).trim();
+            try {
+                switch (keyword) {
+                    case "filter-type" -> typeFilter.addPattern(argument);
+                    case "replace-call" -> callRules.add(parseCallRule(argument, CallAction.REPLACE));
+                    case "remove-call" -> callRules.add(parseCallRule(argument, CallAction.REMOVE));
+                    default -> throw new IllegalArgumentException("Unknown rule: " + keyword);
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warning(source + ":" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return new RuleSet(typeFilter, List.copyOf(callRules), ResultCache.contentHash(String.join("\n", lines)));
+    }
+
+    private static CallRule parseCallRule(String argument, CallAction action) {
+        int hash = argument.indexOf('#');
+        if (hash <= 0 || hash == argument.length() - 1) {
+            throw new IllegalArgumentException("Expected <class>#<method>: " + argument);
+        }
+        return new CallRule(argument.substring(0, hash), argument.substring(hash + 1), action);
+    }
+}
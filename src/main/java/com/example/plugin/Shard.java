@@ -0,0 +1,41 @@
+package com.example.plugin;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * 处理分片：一个模块中的一个源码根目录。每个分片有自己的输出目录和部分结果文件，可单独重跑。
+ * id 形如 "模块名:相对内容根的源码根路径"，用于 --shards 过滤；dirName 是 id 转成的目录名，
+ * 末尾带 id 的短哈希，替换字符后相同的不同 id（如 a:b/c 和 a_b:c）不会共用目录。
+ * sourceRootPath 在文件不属于任何源码根时为 null。
+ */
+record Shard(String id, String dirName, String sourceRootPath) {
+    private static final String NO_MODULE = "(no module)";
+
+    /**
+     * 文件所属的分片；只使用项目结构，dumb 模式下也可调用，需在读操作中调用
+     */
+    static Shard forFile(ProjectFileIndex fileIndex, VirtualFile file) {
+        Module module = fileIndex.getModuleForFile(file);
+        String moduleName = module != null ? module.getName() : NO_MODULE;
+        VirtualFile sourceRoot = fileIndex.getSourceRootForFile(file);
+        if (sourceRoot == null) {
+            return new Shard(moduleName, sanitize(moduleName), null);
+        }
+
+        VirtualFile contentRoot = fileIndex.getContentRootForFile(sourceRoot);
+        String relativePath = contentRoot != null ? VfsUtilCore.getRelativePath(sourceRoot, contentRoot) : null;
+        if (relativePath == null || relativePath.isEmpty()) {
+            relativePath = sourceRoot.getName();
+        }
+        String id = moduleName + ":" + relativePath;
+        return new Shard(id, sanitize(id), sourceRoot.getPath());
+    }
+
+    // 目录名只保留字母、数字、点、横线和下划线，再加上 id 的哈希前缀区分
+    private static String sanitize(String id) {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + ResultCache.contentHash(id).substring(0, 8);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * 合并步骤：把 shards/ 下所有已完成分片的部分结果按分片目录名顺序合并成结果根目录下的
+ * test_files_list.csv 和各格式的实例化记录。没有完成标记的分片跳过，重跑该分片后再合并即可。
+ * 改写结果（parsed_tests_stage1/ 或 parsed_tests_stage1.zip）不合并，留在各分片目录下，归档用 {@link Stage1Rebuilder} 按分片还原。
+ * 本次运行中的分片按批发布分析时写入的 {@link InstantiationStore}（字符串只保存一份，行是编号）：轮到的分片每封存一批
+ * （每个分析批次结束或写满 {@link ShardRecords#BATCH_ROWS} 行）就立即发布，导出与这个分片自己的分析重叠进行，
+ * 只有一个分片的项目也是如此；还没轮到的分片的批次在 {@link ShardRecords} 中等待。
+ * 之前运行留下的分片（--shards 只重跑了其他分片）从部分结果 CSV 读入存储。存储发布给 {@link ExportFanOut}，由各个输出同时导出。
+ * <p>
+ * 分片中途失败时，已经发布的批次留在本次的输出中，test_files_list.csv 不包含这个分片；用 --shards 重跑该分片后输出即完整。
+ */
+final class ShardMerger {
+    private static final Logger logger = Logger.getLogger(ShardMerger.class.getName());
+
+    private ShardMerger() {
+    }
+
+    /**
+     * 本次运行中仍在处理的分片：记录通道，以及等待分片结束并返回它是否完整完成
+     */
+    record PendingShard(ShardRecords records, BooleanSupplier completion) {
+    }
+
+    /**
+     * 合并全部已完成分片，返回合并的分片数。pendingShards 为本次运行中仍在处理的分片，目录名 -> 分片；
+     * checkCanceled 在等待批次期间定期调用。fanOut 由调用方关闭
+     */
+    static int merge(PipelineConfig config, ExportFanOut fanOut, Map<String, PendingShard> pendingShards, Runnable checkCanceled)
+            throws IOException {
+        try {
+            return mergeShards(config, fanOut, pendingShards, checkCanceled);
+        } finally {
+            // 失败或取消时，没取完的分片的批次不再发布
+            for (PendingShard pending : pendingShards.values()) {
+                pending.records().discard();
+            }
+        }
+    }
+
+    private static int mergeShards(PipelineConfig config, ExportFanOut fanOut, Map<String, PendingShard> pendingShards,
+                                   Runnable checkCanceled) throws IOException {
+        TreeSet<String> shardNames = new TreeSet<>(pendingShards.keySet());
+        File[] existingDirs = config.getShardsDir().listFiles(File::isDirectory);
+        if (existingDirs != null) {
+            for (File dir : existingDirs) {
+                shardNames.add(dir.getName());
+            }
+        }
+
+        File csvFile = config.getTestFilesCsvFile();
+        Files.createDirectories(csvFile.toPath().toAbsolutePath().getParent());
+        int merged = 0;
+        try (BufferedWriter csvWriter = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            csvWriter.write("\"Test File Name\",\"Test File Path\",\"CUT\",\"CUT Path\"\n");
+            for (String shardName : shardNames) {
+                PipelineConfig shardConfig = new PipelineConfig(new File(config.getShardsDir(), shardName));
+                PendingShard pending = pendingShards.get(shardName);
+                if (pending != null) {
+                    long published = publishBatches(pending.records(), fanOut, checkCanceled);
+                    if (!pending.completion().getAsBoolean()) {
+                        if (published > 0) {
+                            logger.warning("Shard " + shardName + " failed after " + published
+                                    + " records were exported; re-run it with --shards to complete the outputs.");
+                        }
+                        continue;
+                    }
+                    appendWithoutHeader(shardConfig.getTestFilesCsvFile(), csvWriter);
+                } else if (shardConfig.getShardCompleteMarker().isFile()) {
+                    InstantiationStore store = loadRecords(shardConfig.getInstantiationPartFile(), config);
+                    try {
+                        appendWithoutHeader(shardConfig.getTestFilesCsvFile(), csvWriter);
+                    } catch (IOException | RuntimeException e) {
+                        store.close();
+                        throw e;
+                    }
+                    fanOut.publish(store);
+                } else {
+                    logger.warning("Skipping incomplete shard: " + shardName);
+                    continue;
+                }
+                merged++;
+            }
+        }
+        ExportFanOut.fsync(csvFile);
+        logger.info("Merged " + merged + " of " + shardNames.size() + " shards into " + config.getResultRoot());
+        return merged;
+    }
+
+    /**
+     * 按顺序发布一个分片的全部批次，直到分片结束；返回发布的行数
+     */
+    private static long publishBatches(ShardRecords records, ExportFanOut fanOut, Runnable checkCanceled) throws IOException {
+        long published = 0;
+        try {
+            InstantiationStore batch;
+            while ((batch = records.next(checkCanceled)) != null) {
+                published += batch.size();
+                fanOut.publish(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shard records");
+        }
+        return published;
+    }
+
+    private static void appendWithoutHeader(File file, BufferedWriter writer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * 读入之前运行留下的分片的部分结果 CSV
+     */
+    private static InstantiationStore loadRecords(File partFile, PipelineConfig config) throws IOException {
+        InstantiationStore store = new InstantiationStore(config.getRecordStoreHeapRows(), config.getResultRoot());
+        try (BufferedReader reader = Files.newBufferedReader(partFile.toPath(), StandardCharsets.UTF_8)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    store.append(CsvRows.parse(line));
+                }
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+    }
+}
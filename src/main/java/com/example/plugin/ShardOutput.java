@@ -0,0 +1,120 @@
+package com.example.plugin;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * 一个分片的输出：分片目录下的 test_files_list.csv、改写后的文件（或修改归档）和部分实例化记录。
+ * 实例化记录编号化写入 {@link InstantiationStore}，每写满 {@link ShardRecords#BATCH_ROWS} 行或每个分析批次结束时
+ * 封存成一批交给 {@link ShardRecords}，由合并步骤边分析边导出；同时写一份部分结果 CSV，
+ * 之后用 --shards 只重跑其他分片时从磁盘合并这个分片。
+ * 打开时清空分片目录上一次的结果；只有完整处理过的分片在关闭时写出完成标记。
+ */
+class ShardOutput {
+    private static final Logger logger = Logger.getLogger(ShardOutput.class.getName());
+
+    private final Shard shard;
+    private final PipelineConfig config;
+    private final OutputWriter outputWriter;
+    private final CsvInstantiationSink partSink;
+    private final ShardRecords records;
+    // 正在写入、尚未封存的一批
+    private InstantiationStore batch;
+    private boolean recordsFailed;
+    private int fileCount;
+
+    ShardOutput(Shard shard, PipelineConfig shardConfig, ShardRecords records, ResultCache cache, DedupStore dedupStore,
+                PipelineMetrics metrics) throws IOException {
+        this.shard = shard;
+        this.config = shardConfig;
+        this.records = records;
+        FileUtil.delete(shardConfig.getResultRoot());
+        this.outputWriter = new OutputWriter(shardConfig, cache, dedupStore, metrics);
+        try {
+            this.partSink = new CsvInstantiationSink(shardConfig.getInstantiationPartFile());
+        } catch (IOException e) {
+            outputWriter.close();
+            throw e;
+        }
+        this.batch = newBatch();
+    }
+
+    Shard getShard() {
+        return shard;
+    }
+
+    /**
+     * 提交一个文件的结果，只能由处理该分片的线程调用
+     */
+    void emit(TestFileResult result) {
+        outputWriter.submit(result);
+        appendRecords(result);
+        fileCount++;
+    }
+
+    // 新增的行同时写入部分结果 CSV
+    private void appendRecords(TestFileResult result) {
+        if (recordsFailed) {
+            return;
+        }
+        long from = batch.size();
+        try {
+            batch.append(result.fileName(), result.records());
+        } catch (IOException e) {
+            recordsFailed = true;
+            logger.severe("Failed to store records of shard " + shard.id() + ": " + e.getMessage());
+            return;
+        }
+        partSink.appendRows(batch, from, batch.size());
+        if (batch.size() >= ShardRecords.BATCH_ROWS) {
+            flushRecords();
+        }
+    }
+
+    /**
+     * 把已写入的记录封存成一批交给合并步骤；每个分析批次结束时调用，只能由处理该分片的线程调用
+     */
+    void flushRecords() {
+        if (recordsFailed || batch.size() == 0) {
+            return;
+        }
+        records.add(batch);
+        batch = newBatch();
+    }
+
+    private InstantiationStore newBatch() {
+        return new InstantiationStore(records.nextHeapRows(), config.getResultRoot());
+    }
+
+    /**
+     * 等待分片的输出写完并关闭，然后结束记录通道；complete 为 true 且全部结果写出时交出最后一批记录并写完成标记，
+     * 返回是否已标记完成。不完整的分片丢弃尚未交出的记录
+     */
+    boolean close(boolean complete) {
+        try {
+            outputWriter.close();
+            partSink.close();
+            if (!complete || recordsFailed || partSink.hasFailed() || outputWriter.hasFailed()) {
+                logger.warning("Shard " + shard.id() + " is incomplete and will be skipped when merging.");
+                return false;
+            }
+            flushRecords();
+            File marker = config.getShardCompleteMarker();
+            try {
+                Files.writeString(marker.toPath(), shard.id() + "\n" + fileCount + "\n", StandardCharsets.UTF_8);
+                return true;
+            } catch (IOException e) {
+                logger.severe("Failed to mark shard " + shard.id() + " complete: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            batch.close();
+            records.finish();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.plugin;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个分片的实例化记录从分析侧交给合并步骤的通道。{@link ShardOutput} 每写满一批（或每个分析批次结束）就把当前的
+ * {@link InstantiationStore} 封存后放入通道，合并步骤轮到这个分片时按顺序取出并立即发布，只有一个分片的项目导出也与分析重叠进行。
+ * 还没轮到的分片的批次在通道中等待；等待的行数达到上限后，新批次在堆内只保留一小段，其余转存到映射文件。
+ */
+final class ShardRecords {
+    // 一批最多的行数，写满后立即封存
+    static final int BATCH_ROWS = 1 << 16;
+    // 等待的行数达到上限后，新批次在堆内保留的行数
+    private static final int SPILL_WINDOW_ROWS = 4096;
+    private static final long POLL_MILLIS = 100;
+
+    private record Batch(InstantiationStore store) {
+    }
+
+    // 分片结束标记
+    private static final Batch END = new Batch(null);
+
+    private final BlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong queuedRows = new AtomicLong();
+    private final int maxQueuedHeapRows;
+    // 合并步骤放弃这个分片后，放入的批次直接关闭
+    private volatile boolean discarded;
+
+    /**
+     * maxQueuedHeapRows 为等待发布的批次在堆内最多保留的行数
+     */
+    ShardRecords(int maxQueuedHeapRows) {
+        this.maxQueuedHeapRows = Math.max(1, maxQueuedHeapRows);
+    }
+
+    /**
+     * 新批次在堆内保留的行数：等待的行数达到上限后只保留一小段
+     */
+    int nextHeapRows() {
+        return queuedRows.get() >= maxQueuedHeapRows ? SPILL_WINDOW_ROWS : BATCH_ROWS;
+    }
+
+    /**
+     * 分析侧：放入一批封存的记录，之后不能再写入
+     */
+    void add(InstantiationStore store) {
+        queuedRows.addAndGet(store.size());
+        queue.add(new Batch(store));
+        if (discarded) {
+            drain();
+        }
+    }
+
+    /**
+     * 分析侧：分片结束（包括失败），之后不再放入批次
+     */
+    void finish() {
+        queue.add(END);
+    }
+
+    /**
+     * 合并侧：按顺序取出下一批，分片结束时返回 null；等待期间定期调用 checkCanceled
+     */
+    InstantiationStore next(Runnable checkCanceled) throws InterruptedException {
+        while (true) {
+            checkCanceled.run();
+            Batch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch == null) {
+                continue;
+            }
+            if (batch == END) {
+                return null;
+            }
+            queuedRows.addAndGet(-batch.store().size());
+            return batch.store();
+        }
+    }
+
+    /**
+     * 合并侧：不再取出这个分片的批次（合并失败或取消），关闭已放入和之后放入的批次
+     */
+    void discard() {
+        discarded = true;
+        drain();
+    }
+
+    private void drain() {
+        Batch batch;
+        while ((batch = queue.poll()) != null) {
+            if (batch != END) {
+                queuedRows.addAndGet(-batch.store().size());
+                batch.store().close();
+            }
+        }
+    }
+}
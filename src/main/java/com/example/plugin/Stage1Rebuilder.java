@@ -0,0 +1,134 @@
+package com.example.plugin;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 从 parsed_tests_stage1.zip 还原完整的改写结果，不需要启动 IDE：
+ * 读取每个条目记录的原文，确认哈希与生成归档时一致后应用修改列表，按条目中保存的相对路径写到输出目录，
+ * 与直接输出改写后的文件时的布局相同（分片输出时相对源码根），不同目录下的同名测试类不会互相覆盖。
+ * <p>
+ * 归档按分片写在 shards/&lt;分片目录&gt;/ 下，不合并。输入为结果根目录或其中的 shards/ 目录时，按目录名顺序还原每个已完成分片的归档，
+ * 写到 &lt;输出目录&gt;/&lt;分片目录&gt;/，与直接输出文件时 shards/&lt;分片目录&gt;/parsed_tests_stage1/ 的布局对应。
+ * <p>
+ * 用法：java -cp &lt;插件 jar&gt; com.example.plugin.Stage1Rebuilder &lt;归档文件 | 结果根目录 | shards 目录&gt; &lt;输出目录&gt;
+ */
+public final class Stage1Rebuilder {
+    private static final Logger logger = Logger.getLogger(Stage1Rebuilder.class.getName());
+
+    private Stage1Rebuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: Stage1Rebuilder <parsed_tests_stage1.zip | result root | shards dir> <output dir>");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path outputDir = Paths.get(args[1]);
+        int failures = Files.isDirectory(input) ? rebuildShards(input, outputDir) : rebuild(input, outputDir);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * 还原全部已完成分片的归档，root 为结果根目录或其中的 shards/ 目录；每个分片写到 outputDir/&lt;分片目录&gt;。
+     * 没有完成标记的分片跳过，没有归档的分片（直接输出文件）不需要还原。返回无法还原的文件数
+     */
+    static int rebuildShards(Path root, Path outputDir) throws IOException {
+        File shardsDir = new PipelineConfig(root.toFile()).getShardsDir();
+        if (!shardsDir.isDirectory()) {
+            shardsDir = root.toFile();
+        }
+        File[] shardDirs = shardsDir.listFiles(File::isDirectory);
+        if (shardDirs == null) {
+            throw new IOException("Cannot list shards in " + shardsDir);
+        }
+        Arrays.sort(shardDirs, Comparator.comparing(File::getName));
+        int failures = 0;
+        for (File shardDir : shardDirs) {
+            PipelineConfig shardConfig = new PipelineConfig(shardDir);
+            File archive = shardConfig.getStage1ArchiveFile();
+            if (!archive.isFile()) {
+                continue;
+            }
+            if (!shardConfig.getShardCompleteMarker().isFile()) {
+                logger.warning("Skipping incomplete shard: " + shardDir.getName());
+                continue;
+            }
+            failures += rebuild(archive.toPath(), outputDir.resolve(shardDir.getName()));
+        }
+        return failures;
+    }
+
+    /**
+     * 还原归档中的全部文件，返回原文缺失或已变化而无法还原的文件数
+     */
+    static int rebuild(Path archive, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        int rebuilt = 0;
+        int failures = 0;
+        try (ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+            DataInputStream in = new DataInputStream(zipStream);
+            ZipEntry entry;
+            while ((entry = zipStream.getNextEntry()) != null) {
+                if (!entry.getName().endsWith(EditArchiveWriter.ENTRY_SUFFIX)) {
+                    continue;
+                }
+                int version = in.readInt();
+                if (version != EditArchiveWriter.FORMAT_VERSION && version != 1) {
+                    throw new IOException("Unsupported archive entry format: " + entry.getName());
+                }
+                String fileName = in.readUTF();
+                // 版本 1 的条目只有文件名
+                String outputPath = version == 1 ? fileName : in.readUTF();
+                String filePath = in.readUTF();
+                String contentHash = in.readUTF();
+                int editCount = in.readInt();
+                List<TextEdit> edits = new ArrayList<>(editCount);
+                for (int i = 0; i < editCount; i++) {
+                    edits.add(new TextEdit(in.readInt(), in.readInt(), in.readUTF()));
+                }
+
+                String originalText = readOriginal(Paths.get(filePath));
+                if (originalText == null || !contentHash.equals(ResultCache.contentHash(originalText))) {
+                    logger.warning("Original file is missing or has changed, skipped: " + filePath);
+                    failures++;
+                    continue;
+                }
+                Path outputFile = outputDir.resolve(outputPath).normalize();
+                if (!outputFile.startsWith(outputDir.normalize())) {
+                    throw new IOException("Archive entry points outside the output directory: " + entry.getName());
+                }
+                Files.createDirectories(outputFile.getParent());
+                Files.writeString(outputFile, TextEdit.apply(originalText, edits), StandardCharsets.UTF_8);
+                rebuilt++;
+            }
+        }
+        logger.info("Rebuilt " + rebuilt + " files into " + outputDir + (failures > 0 ? ", " + failures + " skipped." : "."));
+        return failures;
+    }
+
+    /**
+     * 按 IDE 加载文件的方式读取原文：UTF-8、去掉 BOM、行分隔符统一为 \n，保证偏移和哈希与 PSI 文本一致
+     */
+    private static String readOriginal(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        String text = Files.readString(path, StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+}
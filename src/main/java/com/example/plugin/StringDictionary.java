@@ -0,0 +1,70 @@
+package com.example.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 字典编码：每个不同的字符串分配一个从 0 开始的连续编号，重复出现的长类名只保存一次。
+ * 非线程安全，由单个写入线程使用。
+ */
+final class StringDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * 返回字符串的编号，第一次出现时分配新编号
+     */
+    int idOf(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    String valueOf(int id) {
+        return values.get(id);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * 从 source 的编号到本字典编号的映射：每个源编号只在第一次出现时查一次哈希表，之后是数组查找
+     */
+    Remap remapFrom(StringDictionary source) {
+        return new Remap(source);
+    }
+
+    final class Remap {
+        private final StringDictionary source;
+        // 源编号 -> 本字典编号 + 1，0 表示还没有映射
+        private int[] mapping = new int[256];
+
+        private Remap(StringDictionary source) {
+            this.source = source;
+        }
+
+        StringDictionary source() {
+            return source;
+        }
+
+        int map(int sourceId) {
+            if (sourceId >= mapping.length) {
+                mapping = Arrays.copyOf(mapping, Math.max(sourceId + 1, mapping.length * 2));
+            }
+            int id = mapping[sourceId] - 1;
+            if (id < 0) {
+                id = idOf(source.valueOf(sourceId));
+                mapping[sourceId] = id + 1;
+            }
+            return id;
+        }
+    }
+}
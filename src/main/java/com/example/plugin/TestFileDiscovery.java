@@ -0,0 +1,64 @@
+package com.example.plugin;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.java.stubs.index.JavaStubIndexKeys;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.AnnotatedElementsSearch;
+import com.intellij.psi.stubs.StubIndex;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 测试文件发现：通过注解索引找出带 @Test 方法的文件，不需要为生产代码构建 AST
+ */
+final class TestFileDiscovery {
+    static final List<String> TEST_ANNOTATIONS = List.of("org.junit.Test", "org.junit.jupiter.api.Test");
+
+    private TestFileDiscovery() {
+    }
+
+    /**
+     * 查找项目中包含测试方法的 Java 文件，需在读操作中调用
+     */
+    static Set<VirtualFile> findTestFiles(Project project) {
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        Set<VirtualFile> testFiles = new LinkedHashSet<>();
+
+        boolean annotationResolved = false;
+        for (String annotationName : TEST_ANNOTATIONS) {
+            PsiClass annotationClass = JavaPsiFacade.getInstance(project).findClass(annotationName, allScope);
+            if (annotationClass == null) {
+                continue;
+            }
+            annotationResolved = true;
+            AnnotatedElementsSearch.searchPsiMethods(annotationClass, projectScope).forEach(method -> {
+                addContainingFile(method, testFiles);
+                return true;
+            });
+        }
+
+        // JUnit 不在 classpath 上时，退回按短名查询注解的存根索引
+        if (!annotationResolved) {
+            for (PsiAnnotation annotation : StubIndex.getElements(JavaStubIndexKeys.ANNOTATIONS, "Test", project, projectScope, PsiAnnotation.class)) {
+                if (annotation.getParent() instanceof PsiModifierList modifierList
+                        && modifierList.getParent() instanceof PsiMethod method
+                        && TEST_ANNOTATIONS.contains(annotation.getQualifiedName())) {
+                    addContainingFile(method, testFiles);
+                }
+            }
+        }
+        return testFiles;
+    }
+
+    private static void addContainingFile(PsiElement element, Set<VirtualFile> testFiles) {
+        PsiFile file = element.getContainingFile();
+        if (file instanceof PsiJavaFile && file.getVirtualFile() != null) {
+            testFiles.add(file.getVirtualFile());
+        }
+    }
+}
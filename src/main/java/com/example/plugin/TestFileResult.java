@@ -0,0 +1,19 @@
+package com.example.plugin;
+
+import java.util.List;
+
+/**
+ * 单个测试文件的分析结果，由工作线程在读操作中生成，再交给输出阶段写盘。
+ * dedupKey 不为 null 时，输出阶段还要把结果写入跨项目的去重存储
+ */
+record TestFileResult(String fileName,
+                      String filePath,
+                      String cutName,
+                      String cutPath,
+                      String contentHash,
+                      String modifiedContent,
+                      List<TextEdit> edits,
+                      List<Instantiation> records,
+                      boolean fromCache,
+                      DedupStore.Key dedupKey) {
+}
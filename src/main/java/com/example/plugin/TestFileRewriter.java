@@ -0,0 +1,345 @@
+package com.example.plugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 单个测试文件的改写：移除 Mockito 调用，记录对象实例化并替换为伪代码。
+ * 每个文件使用一个新实例，可在多个工作线程中并行使用。
+ */
+class TestFileRewriter {
+    private static final Logger logger = Logger.getLogger(TestFileRewriter.class.getName());
+
+    private final Project project;
+    private final TypeClassifier typeClassifier;
+    private final MockitoCallMatcher mockitoMatcher;
+    private final String fileName;
+    private final List<Instantiation> records = new ArrayList<>();
+    private final PsiEditBatch edits = new PsiEditBatch();
+    private List<TextEdit> textEdits = List.of();
+
+    TestFileRewriter(Project project, String fileName) {
+        this.project = project;
+        this.typeClassifier = TypeClassifier.getInstance(project);
+        this.mockitoMatcher = MockitoCallMatcher.getInstance(project);
+        this.fileName = fileName;
+    }
+
+    /**
+     * 本文件记录下的对象实例化（Test Case, Class Name, Mocked），Test Suite 即本文件名
+     */
+    List<Instantiation> getRecords() {
+        return records;
+    }
+
+    /**
+     * 相对原文的修改列表，可用于只保存差异的输出模式
+     */
+    List<TextEdit> getTextEdits() {
+        return textEdits;
+    }
+
+    /**
+     * PSI 副本引擎：从文本重新解析出临时副本，在副本上执行修改后返回其文本
+     */
+    String createModifiedContent(String originalContent) {
+        PsiFile tempFile = PsiFileFactory.getInstance(project)
+                .createFileFromText("Temp.java", JavaFileType.INSTANCE, originalContent);
+
+        if (!(tempFile instanceof PsiJavaFile)) {
+            logger.warning("The file is not a valid Java file.");
+            return originalContent;
+        }
+
+        PsiJavaFile javaFile = (PsiJavaFile) tempFile;
+        analyze(javaFile);
+        textEdits = edits.toTextEdits();
+
+        // 所有修改在分析结束后一次性执行
+        edits.apply(project);
+        return javaFile.getText();
+    }
+
+    /**
+     * 文本偏移引擎：只读地分析已加载的 PSI，把修改作为区间替换一次性应用到原文上，
+     * 省去第二次解析和中间 PSI 的分配。需在读操作中调用。
+     */
+    String createModifiedContent(PsiJavaFile javaFile) {
+        analyze(javaFile);
+        textEdits = edits.toTextEdits();
+        return TextEdit.apply(javaFile.getNode().getChars(), textEdits);
+    }
+
+    private void analyze(PsiJavaFile javaFile) {
+        for (PsiClass psiClass : javaFile.getClasses()) {
+            analyzeClass(psiClass);
+        }
+    }
+
+    /**
+     * 分析一个类及其各级内部类（JUnit 5 的 @Nested、静态内部测试类）
+     */
+    private void analyzeClass(PsiClass psiClass) {
+        analyzeFields(psiClass);
+
+        for (PsiMethod method : psiClass.getMethods()) {
+            // 确保 @BeforeAll、@BeforeEach、@Test 方法都被遍历
+            analyzeMethod(method);
+        }
+        for (PsiClass innerClass : psiClass.getInnerClasses()) {
+            analyzeClass(innerClass);
+        }
+    }
+
+    /**
+     * 只分析类的 mock 字段；与 {@link #analyzeMethod} 配合可按方法增量分析，结果由 {@link #collectTextEdits()} 取出
+     */
+    void analyzeFields(PsiClass psiClass) {
+        modifyMockFields(psiClass);
+    }
+
+    /**
+     * 只分析一个方法体
+     */
+    void analyzeMethod(PsiMethod method) {
+        PsiCodeBlock body = method.getBody();
+        if (body != null) {
+            body.accept(new MethodBodyVisitor(method.getName()));
+        }
+    }
+
+    /**
+     * 把目前已分析出的修改转换为相对原文的区间替换，不修改 PSI
+     */
+    List<TextEdit> collectTextEdits() {
+        textEdits = edits.toTextEdits();
+        return textEdits;
+    }
+
+    /**
+     * 单次遍历方法体：同时完成 Mockito 调用移除、局部变量和赋值的记录与替换。
+     * 按兄弟节点遍历，不为每个节点分配子节点数组；已计划删除或替换的子树、字面量和注解不再进入。
+     */
+    private final class MethodBodyVisitor extends JavaRecursiveElementWalkingVisitor {
+        private final String methodName;
+
+        MethodBodyVisitor(String methodName) {
+            this.methodName = methodName;
+        }
+
+        @Override
+        public void visitMethodCallExpression(@NotNull PsiMethodCallExpression methodCall) {
+            // 删除 remove-call 规则匹配的调用（默认是 Mockito stubbing / verify）所在的完整语句
+            if (methodCall.getParent() instanceof PsiExpressionStatement statement
+                    && mockitoMatcher.isRemovedCall(methodCall)) {
+                edits.delete(statement);
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Removed Mockito stubbing: " + methodCall.getText());
+                }
+                return;
+            }
+            super.visitMethodCallExpression(methodCall);
+        }
+
+        @Override
+        public void visitDeclarationStatement(@NotNull PsiDeclarationStatement declaration) {
+            for (PsiElement declaredElement : declaration.getDeclaredElements()) {
+                if (declaredElement instanceof PsiLocalVariable variable) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Processing local variable: " + variable.getName() + " in " + fileName);
+                    }
+                    processLocalVariable(variable, methodName);
+                }
+            }
+            super.visitDeclarationStatement(declaration);
+        }
+
+        @Override
+        public void visitAssignmentExpression(@NotNull PsiAssignmentExpression assignment) {
+            PsiExpression initializer = assignment.getRExpression();
+            if (initializer != null) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Processing assignment in " + fileName);
+                }
+                handleInstantiationExpression(initializer, methodName);
+            }
+            super.visitAssignmentExpression(assignment);
+        }
+
+        @Override
+        public void visitExpression(@NotNull PsiExpression expression) {
+            // 已计划替换的子树不再处理
+            if (!edits.isTarget(expression)) {
+                super.visitExpression(expression);
+            }
+        }
+
+        @Override
+        public void visitLiteralExpression(@NotNull PsiLiteralExpression expression) {
+            // 字面量中不可能有需要处理的节点
+        }
+
+        @Override
+        public void visitModifierList(@NotNull PsiModifierList list) {
+            // 局部变量和局部类上的注解不需要处理
+        }
+    }
+
+
+    /**
+     * 判断是否是 `mock(ClassName.class)` 形式的调用
+     */
+    private boolean isMockedMethodCall(PsiMethodCallExpression methodCall) {
+        // 允许 mock(Class.class) 或 Mockito.mock(Class.class)，通过解析确认
+        boolean isMocked = mockitoMatcher.isMockCall(methodCall);
+        // 逐节点日志默认关闭，只在 FINE 级别下拼接文本
+        if (isMocked && logger.isLoggable(Level.FINE)) {
+            logger.fine("Detected mock() call: " + methodCall.getText());
+        }
+        return isMocked;
+    }
+
+
+    /**
+     * 处理对象实例化表达式，包括 mock(Class.class) 形式
+     */
+    private void handleInstantiationExpression(PsiExpression expression, String methodName) {
+        if (expression instanceof PsiNewExpression) {
+            // 处理 `new ClassName(...)`
+            PsiNewExpression newExpression = (PsiNewExpression) expression;
+            PsiJavaCodeReferenceElement classReference = newExpression.getClassReference();
+            if (classReference != null) {
+                String className = classReference.getQualifiedName();
+                recordAndReplaceExpression(expression, methodName, className, false);
+            }
+        } else if (expression instanceof PsiMethodCallExpression) {
+            // 处理 `mock(ClassName.class)`
+            PsiMethodCallExpression methodCall = (PsiMethodCallExpression) expression;
+            if (isMockedMethodCall(methodCall)) {
+                PsiExpressionList argumentList = methodCall.getArgumentList();
+                PsiExpression[] arguments = argumentList.getExpressions();
+                if (arguments.length == 1 && arguments[0] instanceof PsiClassObjectAccessExpression) {
+                    PsiClassObjectAccessExpression classObject = (PsiClassObjectAccessExpression) arguments[0];
+                    PsiType type = classObject.getOperand().getType();
+                    String mockedType = type.getCanonicalText(); // 获取类型全限定名
+
+                    // 记录和替换表达式
+                    recordAndReplaceExpression(expression, methodName, mockedType, true);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 记录对象实例化信息并替换为伪代码
+     */
+    private void recordAndReplaceExpression(PsiExpression expression, String methodName, String className, boolean isMocked) {
+        // 跳过基本类型
+        if (typeClassifier.isBasicClassName(className)) {
+            return;
+        }
+
+        // **记录实例化并确认 Mocked 标志**
+        records.add(new Instantiation(methodName, className, isMocked));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Recorded instantiation: " + className + " in " + fileName + ", Mocked: " + isMocked);
+        }
+
+        // 替换为伪代码
+        String pseudoCode = "\"<Instantiate " + className + ">\"";
+        edits.replaceExpression(expression, pseudoCode);
+    }
+
+
+    private void processLocalVariable(PsiLocalVariable variable, String methodName) {
+        if (variable == null || !variable.isValid()) return;
+
+        PsiExpression initializer = variable.getInitializer();
+        if (initializer != null && initializer.isValid()) {
+            PsiType type = variable.getType();
+            if (type == null || !type.isValid()) return;
+
+            // 检查是否为基本类型
+            if (isBasicType(type)) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Skipped basic type: " + type.getCanonicalText());
+                }
+                return;
+            }
+
+            String className = type.getCanonicalText();
+            boolean isMocked = mockitoMatcher.startsWithMockCall(initializer);
+
+            // 记录到 XLSX
+            records.add(new Instantiation(methodName, className, isMocked));
+
+            // 替换为伪代码
+            replaceWithPseudoCode(variable, initializer);
+        }
+    }
+
+    /**
+     * 查找类中的 @Mock 变量，并替换为伪代码
+     */
+    private void modifyMockFields(PsiClass psiClass) {
+        for (PsiField field : psiClass.getFields()) {
+            if (hasMockAnnotation(field)) {
+                replaceMockFieldWithPseudoCode(field);
+            }
+        }
+    }
+
+
+    /**
+     * 检查 PsiField 是否被 @Mock 注解
+     */
+    private boolean hasMockAnnotation(PsiField field) {
+        for (PsiAnnotation annotation : field.getAnnotations()) {
+            if ("org.mockito.Mock".equals(annotation.getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 替换 @Mock 变量声明为伪代码初始化，并记录到 instances_list
+     */
+    private void replaceMockFieldWithPseudoCode(PsiField field) {
+        PsiType type = field.getType();
+        if (isBasicType(type)) {
+            return; // 忽略基本类型
+        }
+
+        String className = type.getCanonicalText();
+        String pseudoCode = "\"<Instantiate " + className + ">\"";
+        edits.replaceField(field, className + " " + field.getName() + " = " + pseudoCode + ";");
+
+        // 记录到 instances_list (records)
+        String testMethodName = "CLASS_LEVEL";  // 由于 @Mock 变量是类级别的，没有特定的方法
+        records.add(new Instantiation(testMethodName, className, true));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Recorded @Mock instantiation: " + className + " in " + fileName);
+        }
+    }
+
+
+    private boolean isBasicType(PsiType type) {
+        return typeClassifier.isBasicType(type);
+    }
+
+    private void replaceWithPseudoCode(PsiLocalVariable variable, PsiExpression initializer) {
+        String type = variable.getType().getPresentableText();
+        String sanitizedType = type.replaceAll("[^a-zA-Z0-9_.]", "").trim();
+        String pseudoCode = "\"<Instantiate " + sanitizedType + ">\"";
+        edits.replaceExpression(initializer, pseudoCode);
+    }
+}
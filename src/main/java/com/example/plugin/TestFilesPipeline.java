@@ -0,0 +1,606 @@
+package com.example.plugin;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.file.impl.FileManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 修改项目中全部测试文件的批处理流程，供菜单动作和无界面批处理共用。
+ * 不依赖索引的工作（类名映射、缓存复用）立即开始；依赖索引的发现和分析在智能模式下运行，IDE 正在建立索引时排队等待。
+ * 分析阶段：每个文件是一个读操作单元，在有界线程池上并行执行，按堆余量分批提交（见 {@link MemoryAwareScheduler}）；
+ * 文件按模块和源码根目录分成 {@link Shard}，每个分片有独立的输出目录和部分结果（见 {@link ShardOutput}），
+ * 多个分片同时处理；分片的实例化记录按批经 {@link ShardRecords} 交给 {@link ShardMerger}，轮到的分片边分析边导出，
+ * 各输出格式和运行统计由 {@link ExportFanOut} 的工作线程同时写出，分析结束时导出也基本完成。失败的分片可以单独重跑后再合并。
+ */
+class TestFilesPipeline {
+    private static final Logger logger = Logger.getLogger(TestFilesPipeline.class.getName());
+
+    private final Project project;
+    private final PipelineConfig config;
+
+    TestFilesPipeline(Project project, PipelineConfig config) {
+        this.project = project;
+        this.config = config;
+    }
+
+    /**
+     * 在后台线程中运行整个流程，不能在 EDT 或读操作中调用；返回本次运行的统计
+     */
+    PipelineMetrics run(ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        indicator.setText("Collecting test files");
+        PipelineMetrics metrics = new PipelineMetrics();
+        // 规则配置有变化时在开始前重新编译，逐节点的检查只读取编译好的规则
+        RuleEngine ruleEngine = RuleEngine.getInstance(project);
+        ruleEngine.reloadIfChanged();
+
+        // 一次性建立类名映射，分析阶段的 CUT 查找不再查询文件名索引；只依赖项目结构，索引期间也可执行
+        indicator.setText("Indexing source classes");
+        long classMapStart = System.nanoTime();
+        CutResolver cutResolver = ReadAction.nonBlocking(() -> CutResolver.build(project))
+                .wrapProgress(indicator)
+                .executeSynchronously();
+        metrics.record(PipelineMetrics.Phase.CLASS_MAP, classMapStart);
+
+        // 不同规则或不同改写引擎生成的结果不能互相复用
+        String resultFingerprint = ruleEngine.getRules().fingerprint() + ":" + config.getRewriteEngine();
+        ResultCache cache = config.isIncremental() ? new ResultCache(config.getCacheDir(), resultFingerprint) : null;
+        // 跨项目去重：与其他项目中内容相同（包名可以不同）的测试文件共用改写结果
+        DedupStore dedupStore = config.getDedupDir() != null ? new DedupStore(config.getDedupDir(), resultFingerprint) : null;
+
+        // 完整运行时清掉旧分片，避免已删除的模块或源码根在合并时被带入；只重跑部分分片时保留其余分片的结果
+        if (!config.hasShardFilter()) {
+            FileUtil.delete(config.getShardsDir());
+        }
+        Map<Shard, ShardOutput> outputs = new ConcurrentHashMap<>();
+        Map<Shard, ShardRecords> channels = new ConcurrentHashMap<>();
+        Set<Shard> failedShards = ConcurrentHashMap.newKeySet();
+        // 导出开始后，run_metrics.json 由导出的统计输出写出
+        boolean exportStarted = false;
+
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ModifyAllTestFiles", config.getWorkerCount());
+        try {
+            // 不依赖索引的阶段：从 VFS 读取内容、计算哈希并复用缓存结果，IDE 仍在建立索引时也能立即产出
+            Set<VirtualFile> reused = cache != null
+                    ? reuseCachedResults(cutResolver, cache, dedupStore, metrics, outputs, channels, failedShards, indicator)
+                    : Set.of();
+
+            // 依赖索引的阶段：注解索引和解析只在智能模式下运行，索引未完成时排队等待，完成后自动继续
+            indicator.setText(DumbService.isDumb(project) ? "Waiting for indexing to finish" : "Collecting test files");
+            indicator.setText2(null);
+            long discoveryStart = System.nanoTime();
+            List<VirtualFile> testFiles = ReadAction.nonBlocking(() -> new ArrayList<>(TestFileDiscovery.findTestFiles(project)))
+                    .inSmartMode(project)
+                    .wrapProgress(indicator)
+                    .executeSynchronously();
+            metrics.record(PipelineMetrics.Phase.DISCOVERY, discoveryStart);
+            logger.info("Found " + testFiles.size() + " test files in " + project.getName() + ".");
+            testFiles.removeAll(reused);
+
+            Map<Shard, List<VirtualFile>> filesByShard = ReadAction.compute(() -> groupByShard(testFiles));
+            ExecutorService shardExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ModifyAllTestFiles Shards",
+                    config.getShardParallelism());
+            try {
+                Map<String, ShardMerger.PendingShard> pendingShards = startShards(filesByShard, shardExecutor, executor, cutResolver,
+                        cache, dedupStore, metrics, outputs, channels, failedShards, indicator);
+                // 分片按目录名顺序导出，轮到的分片边分析边导出，分析结束时导出也基本完成
+                exportStarted = true;
+                exportShards(pendingShards, metrics, indicator);
+            } finally {
+                // 取消时等分片线程退出后再关闭它们的输出
+                shardExecutor.shutdownNow();
+                try {
+                    shardExecutor.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            // 取消或异常退出时关闭已打开的分片输出，但不标记完成
+            closeShardOutputs(outputs);
+            if (!exportStarted) {
+                MetricsSink.write(metrics, config.getMetricsFile(), project.getName());
+            }
+        }
+        return metrics;
+    }
+
+    private Map<Shard, List<VirtualFile>> groupByShard(List<VirtualFile> files) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Map<Shard, List<VirtualFile>> filesByShard = new LinkedHashMap<>();
+        for (VirtualFile file : files) {
+            Shard shard = Shard.forFile(fileIndex, file);
+            if (config.includesShard(shard)) {
+                filesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(file);
+            }
+        }
+        return filesByShard;
+    }
+
+    /**
+     * 分片的输出在第一次有结果时打开；打开失败的分片记为失败
+     */
+    private ShardOutput outputFor(Shard shard, Map<Shard, ShardOutput> outputs, Map<Shard, ShardRecords> channels, ResultCache cache,
+                                  DedupStore dedupStore, PipelineMetrics metrics) {
+        return outputs.computeIfAbsent(shard, key -> {
+            try {
+                return new ShardOutput(key, config.forShard(key), channelFor(key, channels), cache, dedupStore, metrics);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to prepare output for shard " + key.id(), e);
+            }
+        });
+    }
+
+    /**
+     * 分片的记录通道；分片输出和合并步骤哪一方先用到都在这里创建
+     */
+    private ShardRecords channelFor(Shard shard, Map<Shard, ShardRecords> channels) {
+        return channels.computeIfAbsent(shard, key -> new ShardRecords(config.getRecordStoreHeapRows()));
+    }
+
+    private void closeShardOutputs(Map<Shard, ShardOutput> outputs) {
+        for (ShardOutput output : outputs.values()) {
+            output.close(false);
+        }
+        outputs.clear();
+    }
+
+    /**
+     * 按目录名顺序提交全部分片（包括只有缓存结果的分片），每个分片一个协调线程，分析单元共用同一个有界线程池。
+     * 返回 目录名 -> 分片的记录通道和等待该分片结束并返回是否完整完成
+     */
+    private Map<String, ShardMerger.PendingShard> startShards(Map<Shard, List<VirtualFile>> filesByShard, ExecutorService shardExecutor,
+                                                              ExecutorService executor, CutResolver cutResolver, ResultCache cache,
+                                                              DedupStore dedupStore, PipelineMetrics metrics, Map<Shard, ShardOutput> outputs,
+                                                              Map<Shard, ShardRecords> channels, Set<Shard> failedShards,
+                                                              ProgressIndicator indicator) {
+        Set<Shard> shards = new TreeSet<>(Comparator.comparing(Shard::dirName).thenComparing(Shard::id));
+        shards.addAll(filesByShard.keySet());
+        shards.addAll(outputs.keySet());
+
+        int total = filesByShard.values().stream().mapToInt(List::size).sum();
+        AtomicInteger done = new AtomicInteger();
+        int shardParallelism = Math.max(1, Math.min(config.getShardParallelism(), shards.size()));
+        // 每个分片的最小批大小按同时运行的分片数分摊，合起来仍约等于工作线程数；全部分片共用一个分批协调器
+        int minChunkSize = Math.max(1, config.getWorkerCount() / shardParallelism);
+        MemoryAwareScheduler scheduler = new MemoryAwareScheduler(minChunkSize, this::releaseAnalyzedFiles);
+
+        indicator.setText("Modifying test files");
+        Map<String, ShardMerger.PendingShard> pendingShards = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            List<VirtualFile> files = filesByShard.getOrDefault(shard, List.of());
+            Future<Boolean> future = shardExecutor.submit(() -> runShard(shard, files, executor, cutResolver, cache, dedupStore,
+                    metrics, outputs, channels, failedShards, scheduler, done, total, indicator));
+            pendingShards.put(shard.dirName(), new ShardMerger.PendingShard(channelFor(shard, channels),
+                    () -> awaitShard(shard, future, failedShards, indicator)));
+        }
+        return pendingShards;
+    }
+
+    /**
+     * 分析一个分片并关闭它的输出，返回分片是否完整完成；无论成败都结束分片的记录通道
+     */
+    private boolean runShard(Shard shard, List<VirtualFile> files, ExecutorService executor, CutResolver cutResolver,
+                             ResultCache cache, DedupStore dedupStore, PipelineMetrics metrics, Map<Shard, ShardOutput> outputs,
+                             Map<Shard, ShardRecords> channels, Set<Shard> failedShards, MemoryAwareScheduler scheduler,
+                             AtomicInteger progress, int total, ProgressIndicator indicator) {
+        boolean complete = false;
+        try {
+            analyzeFiles(files, executor, cutResolver, cache, dedupStore, metrics,
+                    outputFor(shard, outputs, channels, cache, dedupStore, metrics), scheduler, progress, total, indicator);
+            complete = !failedShards.contains(shard);
+        } finally {
+            ShardOutput output = outputs.remove(shard);
+            if (output != null) {
+                complete = output.close(complete);
+            } else {
+                complete = false;
+                channelFor(shard, channels).finish();
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * 等待一个分片结束，期间响应取消；分片失败只记录，不影响其他分片
+     */
+    private boolean awaitShard(Shard shard, Future<Boolean> future, Set<Shard> failedShards, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                return future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 继续等待
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProcessCanceledException pce) {
+                    throw pce;
+                }
+                logger.severe("Shard " + shard.id() + " failed, re-run it with --shards=" + shard.id() + ": " + e.getCause());
+                failedShards.add(shard);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 导出阶段：各输出格式和运行统计由 {@link ExportFanOut} 的工作线程同时写出，合并线程按顺序取出分片的记录批次并发布
+     */
+    private void exportShards(Map<String, ShardMerger.PendingShard> pendingShards, PipelineMetrics metrics, ProgressIndicator indicator) {
+        List<ExportFanOut.Target> targets = new ArrayList<>();
+        try {
+            targets.addAll(openSinks());
+        } catch (IOException e) {
+            logger.severe("Failed to prepare instantiation outputs: " + e.getMessage());
+        }
+        // 统计放在最后，其他输出都关闭之后才写出 run_metrics.json
+        targets.add(new ExportFanOut.Target("metrics", new MetricsSink(metrics, config.getMetricsFile(), project.getName()),
+                List.of(config.getMetricsFile())));
+        ExportFanOut fanOut = new ExportFanOut(targets);
+        try {
+            ShardMerger.merge(config, fanOut, pendingShards, indicator::checkCanceled);
+        } catch (IOException e) {
+            logger.severe("Failed to merge shard results: " + e.getMessage());
+        } finally {
+            indicator.setText("Flushing results");
+            indicator.setText2(null);
+            long flushStart = System.nanoTime();
+            if (!fanOut.close()) {
+                logger.warning("Some instantiation outputs were not written completely.");
+            }
+            logger.info("Export finished " + (System.nanoTime() - flushStart) / 1_000_000 + " ms after the last shard was merged.");
+        }
+    }
+
+    /**
+     * 对有缓存条目的 Java 文件，按内容哈希直接复用缓存结果。只使用 VFS、文档和项目结构，不访问索引和 PSI，
+     * 所以可以在 dumb 模式下运行。返回已复用的文件，后续分析阶段跳过它们。
+     */
+    private Set<VirtualFile> reuseCachedResults(CutResolver cutResolver, ResultCache cache, DedupStore dedupStore, PipelineMetrics metrics,
+                                                Map<Shard, ShardOutput> outputs, Map<Shard, ShardRecords> channels, Set<Shard> failedShards,
+                                                ProgressIndicator indicator) {
+        indicator.setText("Reusing cached results");
+        List<VirtualFile> javaFiles = ReadAction.nonBlocking(() -> {
+            List<VirtualFile> files = new ArrayList<>();
+            ProjectFileIndex.getInstance(project).iterateContent(file -> {
+                if (!file.isDirectory() && "java".equals(file.getExtension())) {
+                    files.add(file);
+                }
+                return true;
+            });
+            return files;
+        }).wrapProgress(indicator).executeSynchronously();
+
+        // 缓存条目的文件检查和反序列化都不放在读操作中
+        List<VirtualFile> candidates = new ArrayList<>();
+        for (VirtualFile file : javaFiles) {
+            indicator.checkCanceled();
+            if (cache.hasEntry(file.getPath())) {
+                candidates.add(file);
+            }
+        }
+
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<VirtualFile> reused = new HashSet<>();
+        for (VirtualFile file : candidates) {
+            indicator.checkCanceled();
+            long fileStart = System.nanoTime();
+            CachedCandidate candidate = ReadAction.compute(() -> readCandidate(file, fileIndex, failedShards, metrics));
+            if (candidate == null) {
+                continue;
+            }
+            Shard shard = candidate.shard();
+            TestFileResult result = loadCachedResult(file, candidate.contentHash(), cutResolver, cache, metrics);
+            if (result == null) {
+                continue;
+            }
+            metrics.recordFile(result.filePath(), fileStart, result.records().size(), true);
+            try {
+                indicator.setText2(result.fileName());
+                outputFor(shard, outputs, channels, cache, dedupStore, metrics).emit(result);
+                reused.add(file);
+            } catch (UncheckedIOException e) {
+                logger.severe(e.getMessage() + ": " + e.getCause().getMessage());
+                failedShards.add(shard);
+            }
+        }
+        logger.info("Reused " + reused.size() + " cached results before test discovery.");
+        return reused;
+    }
+
+    /**
+     * 缓存复用的候选文件在读操作中得到的信息：所在分片和当前内容的哈希
+     */
+    private record CachedCandidate(Shard shard, String contentHash) {
+    }
+
+    /**
+     * 读操作中调用：确定文件所在的分片，并读取当前内容计算哈希；文件已失效或分片不在本次范围内时返回 null
+     */
+    private CachedCandidate readCandidate(VirtualFile file, ProjectFileIndex fileIndex, Set<Shard> failedShards, PipelineMetrics metrics) {
+        if (!file.isValid()) {
+            return null;
+        }
+        Shard shard = Shard.forFile(fileIndex, file);
+        if (!config.includesShard(shard) || failedShards.contains(shard)) {
+            return null;
+        }
+        long phaseStart = System.nanoTime();
+        // 未保存的修改以文档内容为准，与 PSI 文本一致
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        CharSequence content = document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+        String contentHash = ResultCache.contentHash(content);
+        metrics.record(PipelineMetrics.Phase.PSI_LOAD, phaseStart);
+        return new CachedCandidate(shard, contentHash);
+    }
+
+    /**
+     * 读操作之外调用：加载内容哈希匹配的缓存条目，命中时在读操作中查找被测类，未命中时返回 null
+     */
+    private TestFileResult loadCachedResult(VirtualFile file, String contentHash, CutResolver cutResolver, ResultCache cache,
+                                            PipelineMetrics metrics) {
+        long phaseStart = System.nanoTime();
+        ResultCache.Entry cached = cache.load(file.getPath(), contentHash);
+        metrics.record(PipelineMetrics.Phase.CACHE_LOOKUP, phaseStart);
+        if (cached == null) {
+            return null;
+        }
+
+        phaseStart = System.nanoTime();
+        String cutClassName = getCUTClassName(extractTestClassName(file.getName()));
+        VirtualFile cutFile = ReadAction.compute(() -> file.isValid() ? cutResolver.find(file, cutClassName) : null);
+        metrics.record(PipelineMetrics.Phase.CUT_LOOKUP, phaseStart);
+        return new TestFileResult(file.getName(), file.getPath(),
+                cutFile != null ? cutClassName : "Not Found", cutFile != null ? cutFile.getPath() : "Not Found",
+                contentHash, cached.modifiedContent(), cached.edits(), cached.records(), true, null);
+    }
+
+    /**
+     * 在有界线程池上分析一个分片的测试文件，按堆余量分批提交，每批结束后释放这一批的文件，堆紧张时等待其他分片的批次
+     */
+    private void analyzeFiles(List<VirtualFile> testFiles, ExecutorService executor, CutResolver cutResolver, ResultCache cache,
+                              DedupStore dedupStore, PipelineMetrics metrics, ShardOutput output, MemoryAwareScheduler scheduler,
+                              AtomicInteger progress, int total, ProgressIndicator indicator) {
+        CompletionService<TestFileResult> completionService = new ExecutorCompletionService<>(executor);
+
+        int done = 0;
+        while (done < testFiles.size()) {
+            List<VirtualFile> chunk = testFiles.subList(done, done + scheduler.beginChunk(testFiles.size() - done));
+            try {
+                for (VirtualFile file : chunk) {
+                    completionService.submit(() -> analyzeFile(file, cutResolver, cache, dedupStore, metrics, indicator));
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    TestFileResult result = takeResult(completionService, metrics, indicator);
+                    indicator.setFraction(progress.incrementAndGet() / (double) total);
+                    if (result != null) {
+                        indicator.setText2(result.fileName());
+                        // CSV、改写后的文件和缓存条目由分片的 I/O 线程写出
+                        output.emit(result);
+                    }
+                }
+                // 这一批的记录交给合并步骤，轮到这个分片时立即导出
+                output.flushRecords();
+            } finally {
+                scheduler.finishChunk(chunk);
+            }
+            done += chunk.size();
+            scheduler.awaitHeadroom(indicator);
+        }
+    }
+
+    /**
+     * 释放一批处理完的文件：在一次写操作中卸下这些文件的 FileViewProvider，连同其中的 PsiFile 和已加载的 AST 一起成为不可达；
+     * 随后清除项目的 PSI 和解析缓存，其他文件的解析结果不会再引用卸下的 PSI，之后再访问这些文件时从 VFS 和存根重新创建。
+     * 在编辑器中打开或有未保存修改的文件不卸下。每批只有这一次写操作，其他分片进行中的非阻塞读操作被取消后自动重启，
+     * 清除的缓存按需重建。PSI_COPY 引擎的临时副本在每个文件改写后即不可达，不需要显式释放
+     */
+    private void releaseAnalyzedFiles(List<VirtualFile> files) {
+        FileEditorManager editorManager = FileEditorManager.getInstance(project);
+        FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        PsiManagerEx psiManager = PsiManagerEx.getInstanceEx(project);
+        WriteAction.runAndWait(() -> {
+            FileManager fileManager = psiManager.getFileManager();
+            for (VirtualFile file : files) {
+                if (file.isValid() && !editorManager.isFileOpen(file) && !documentManager.isFileModified(file)
+                        && fileManager.findCachedViewProvider(file) != null) {
+                    fileManager.setViewProvider(file, null);
+                }
+            }
+            psiManager.dropPsiCaches();
+        });
+    }
+
+    private List<ExportFanOut.Target> openSinks() throws IOException {
+        List<ExportFanOut.Target> targets = new ArrayList<>();
+        try {
+            for (PipelineConfig.OutputFormat format : config.getOutputFormats()) {
+                targets.add(switch (format) {
+                    case XLSX -> new ExportFanOut.Target("xlsx", new InstantiationXlsxWriter(config.getXlsxOutputFile()),
+                            List.of(config.getXlsxOutputFile()));
+                    case JSONL -> new ExportFanOut.Target("jsonl", new JsonlInstantiationSink(config.getJsonlOutputFile()),
+                            List.of(config.getJsonlOutputFile()));
+                    case ARROW -> new ExportFanOut.Target("arrow",
+                            new ArrowInstantiationSink(config.getArrowOutputFile(), config.getArrowDictionaryFile()),
+                            List.of(config.getArrowOutputFile(), config.getArrowDictionaryFile()));
+                });
+            }
+        } catch (Throwable e) {
+            // 任何异常都关闭已经打开的输出，包括 Arrow 分配器初始化失败这类运行时错误
+            targets.forEach(target -> target.sink().close());
+            throw e;
+        }
+        return targets;
+    }
+
+    /**
+     * 等待下一个完成的分析单元，期间响应取消；单个文件失败只记录日志，不中断整个批次
+     */
+    private TestFileResult takeResult(CompletionService<TestFileResult> completionService, PipelineMetrics metrics, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                Future<TestFileResult> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    return future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProcessCanceledException pce) {
+                    throw pce;
+                }
+                logger.severe("Failed to analyze file: " + e.getCause());
+                metrics.recordFailure();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 去重存储查找前在读操作中收集的信息；content 是计算键时的文件内容
+     */
+    private record DedupLookup(String cutName, String cutPath, String contentHash, String content, DedupStore.Key key) {
+    }
+
+    /**
+     * 在非阻塞读操作中分析单个测试文件；遇到写操作时会自动重启，所以不会阻塞 UI。
+     * 增量模式下内容未变化的文件直接使用缓存结果；其次查找去重存储中内容相同的已处理文件。文件已失效时返回 null。
+     * 去重存储的查找是磁盘 I/O，在两个读操作之间进行，写入则交给分片的 I/O 线程，都不占用读锁
+     */
+    private TestFileResult analyzeFile(VirtualFile file, CutResolver cutResolver, ResultCache cache, DedupStore dedupStore,
+                                       PipelineMetrics metrics, ProgressIndicator indicator) {
+        long fileStart = System.nanoTime();
+        Object prepared = ReadAction.nonBlocking(() -> prepareFile(file, cutResolver, cache, dedupStore, metrics))
+                .inSmartMode(project).wrapProgress(indicator).executeSynchronously();
+
+        TestFileResult result;
+        if (prepared instanceof DedupLookup lookup) {
+            long phaseStart = System.nanoTime();
+            DedupStore.Hit hit = dedupStore.load(lookup.key());
+            metrics.record(PipelineMetrics.Phase.CACHE_LOOKUP, phaseStart);
+            if (hit != null) {
+                // 不是本项目的缓存结果，仍需写入本项目的增量缓存
+                metrics.recordDedupHit();
+                result = new TestFileResult(file.getName(), file.getPath(), lookup.cutName(), lookup.cutPath(), lookup.contentHash(),
+                        TextEdit.apply(lookup.content(), hit.edits()), hit.edits(), hit.records(), false, null);
+            } else {
+                result = ReadAction.nonBlocking(() -> rewriteAfterLookup(file, lookup, dedupStore, metrics))
+                        .inSmartMode(project).wrapProgress(indicator).executeSynchronously();
+            }
+        } else {
+            result = (TestFileResult) prepared;
+        }
+
+        if (result != null) {
+            metrics.recordFile(result.filePath(), fileStart, result.records().size(), result.fromCache());
+        }
+        return result;
+    }
+
+    /**
+     * 第一个读操作：查找 CUT 和增量缓存。缓存命中或未启用去重时直接返回 {@link TestFileResult}；
+     * 启用去重时只计算键，返回 {@link DedupLookup}；文件已失效时返回 null
+     */
+    private Object prepareFile(VirtualFile file, CutResolver cutResolver, ResultCache cache, DedupStore dedupStore,
+                               PipelineMetrics metrics) {
+        if (!file.isValid()) {
+            return null;
+        }
+        long phaseStart = System.nanoTime();
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (!(psiFile instanceof PsiJavaFile javaFile)) {
+            return null;
+        }
+        // 只读取文件内容计算哈希，缓存命中时不需要构建 AST
+        CharSequence originalContent = psiFile.getViewProvider().getContents();
+        String contentHash = ResultCache.contentHash(originalContent);
+        metrics.record(PipelineMetrics.Phase.PSI_LOAD, phaseStart);
+
+        phaseStart = System.nanoTime();
+        String testClassName = extractTestClassName(file.getName());
+        String cutClassName = getCUTClassName(testClassName);
+        VirtualFile cutFile = cutResolver.find(file, cutClassName);
+        String cutPath = cutFile != null ? cutFile.getPath() : "Not Found";
+        String cutName = cutFile != null ? cutClassName : "Not Found";
+        metrics.record(PipelineMetrics.Phase.CUT_LOOKUP, phaseStart);
+
+        if (cache != null) {
+            phaseStart = System.nanoTime();
+            ResultCache.Entry cached = cache.load(file.getPath(), contentHash);
+            metrics.record(PipelineMetrics.Phase.CACHE_LOOKUP, phaseStart);
+            if (cached != null) {
+                return new TestFileResult(file.getName(), file.getPath(), cutName, cutPath, contentHash,
+                        cached.modifiedContent(), cached.edits(), cached.records(), true, null);
+            }
+        }
+
+        if (dedupStore != null) {
+            return new DedupLookup(cutName, cutPath, contentHash, originalContent.toString(),
+                    dedupStore.keyOf(javaFile, originalContent));
+        }
+        return rewrite(file, javaFile, originalContent, cutName, cutPath, contentHash, null, metrics);
+    }
+
+    /**
+     * 去重存储未命中后的读操作：改写文件。两次读操作之间文件内容变化时按新内容重新计算键
+     */
+    private TestFileResult rewriteAfterLookup(VirtualFile file, DedupLookup lookup, DedupStore dedupStore, PipelineMetrics metrics) {
+        if (!file.isValid() || !(PsiManager.getInstance(project).findFile(file) instanceof PsiJavaFile javaFile)) {
+            return null;
+        }
+        CharSequence originalContent = javaFile.getViewProvider().getContents();
+        String contentHash = ResultCache.contentHash(originalContent);
+        DedupStore.Key dedupKey = contentHash.equals(lookup.contentHash()) ? lookup.key() : dedupStore.keyOf(javaFile, originalContent);
+        return rewrite(file, javaFile, originalContent, lookup.cutName(), lookup.cutPath(), contentHash, dedupKey, metrics);
+    }
+
+    private TestFileResult rewrite(VirtualFile file, PsiJavaFile javaFile, CharSequence originalContent, String cutName, String cutPath,
+                                   String contentHash, DedupStore.Key dedupKey, PipelineMetrics metrics) {
+        // 修改文件内容
+        long phaseStart = System.nanoTime();
+        TestFileRewriter rewriter = new TestFileRewriter(project, file.getName());
+        String modifiedContent = config.getRewriteEngine() == PipelineConfig.RewriteEngine.PSI_COPY
+                ? rewriter.createModifiedContent(originalContent.toString())
+                : rewriter.createModifiedContent(javaFile);
+        metrics.record(PipelineMetrics.Phase.REWRITE, phaseStart);
+        return new TestFileResult(file.getName(), file.getPath(), cutName, cutPath, contentHash,
+                modifiedContent, rewriter.getTextEdits(), rewriter.getRecords(), false, dedupKey);
+    }
+
+    private String extractTestClassName(String fileName) {
+        if (fileName.endsWith("Test.java")) {
+            return fileName.substring(0, fileName.length() - "Test.java".length());
+        }
+        return fileName.replace(".java", "");
+    }
+
+    private String getCUTClassName(String testClassName) {
+        return testClassName;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.plugin;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 单个测试文件的改写预览：在编辑器中打开一个内存中的 Preview_&lt;name&gt;.java，不写磁盘、不刷新 VFS。
+ * 源文件的文档变化后延迟一段时间在后台只读重算，未变化的方法复用上次的修改列表；
+ * 关闭预览标签页时停止监听。
+ */
+@Service(Service.Level.PROJECT)
+public final class TestRewritePreview implements Disposable {
+    private static final Logger logger = Logger.getLogger(TestRewritePreview.class.getName());
+
+    private static final int DEBOUNCE_MILLIS = 300;
+    private static final int MAX_CACHED_METHODS = 1024;
+
+    private final Project project;
+    private final Map<VirtualFile, PreviewSession> sessions = new HashMap<>();
+    private boolean listening;
+
+    public TestRewritePreview(Project project) {
+        this.project = project;
+    }
+
+    static TestRewritePreview getInstance(Project project) {
+        return project.getService(TestRewritePreview.class);
+    }
+
+    /**
+     * 打开（或切换到）源文件的预览，需在 EDT 上调用
+     */
+    void show(VirtualFile sourceFile) {
+        ApplicationManager.getApplication().assertIsDispatchThread();
+        Document sourceDocument = FileDocumentManager.getInstance().getDocument(sourceFile);
+        if (sourceDocument == null) {
+            logger.warning("Cannot load document for " + sourceFile.getPath());
+            return;
+        }
+        listenForClosedPreviews();
+
+        PreviewSession session = sessions.get(sourceFile);
+        if (session == null) {
+            session = new PreviewSession(sourceFile, sourceDocument);
+            Disposer.register(this, session);
+            sessions.put(sourceFile, session);
+            session.start();
+        } else {
+            // 再次调用时按最新规则重算
+            session.recompute();
+        }
+        FileEditorManager.getInstance(project).openFile(session.previewFile, true);
+    }
+
+    private void listenForClosedPreviews() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+        project.getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+            @Override
+            public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+                sessions.values().removeIf(session -> {
+                    if (session.previewFile.equals(file)) {
+                        Disposer.dispose(session);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        sessions.clear();
+    }
+
+    /**
+     * 一个方法的分析结果：修改偏移相对方法起点，方法整体移动后仍可复用
+     */
+    private record MethodEdits(List<TextEdit> relativeEdits) {
+    }
+
+    /**
+     * 一个源文件的预览状态：预览文档、防抖定时器和按方法文本缓存的修改列表
+     */
+    private final class PreviewSession implements Disposable {
+        private final VirtualFile sourceFile;
+        private final Document sourceDocument;
+        private final LightVirtualFile previewFile;
+        private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+        // 被取消的重算可能与新的重算短暂重叠，按 LRU 淘汰的缓存需要同步
+        private final Map<String, MethodEdits> methodCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MethodEdits> eldest) {
+                return size() > MAX_CACHED_METHODS;
+            }
+        });
+        // 规则或项目结构变化时整体失效；方法体引用的其他类发生变化不在跟踪范围内，重新打开预览即可
+        private volatile String cacheGeneration = "";
+
+        PreviewSession(VirtualFile sourceFile, Document sourceDocument) {
+            this.sourceFile = sourceFile;
+            this.sourceDocument = sourceDocument;
+            this.previewFile = new LightVirtualFile("Preview_" + sourceFile.getName(), JavaFileType.INSTANCE, "");
+        }
+
+        void start() {
+            sourceDocument.addDocumentListener(new DocumentListener() {
+                @Override
+                public void documentChanged(@NotNull DocumentEvent event) {
+                    schedule();
+                }
+            }, this);
+            recompute();
+        }
+
+        private void schedule() {
+            alarm.cancelAllRequests();
+            alarm.addRequest(this::recompute, DEBOUNCE_MILLIS);
+        }
+
+        private void recompute() {
+            // 调整规则文件后，下一次重算即按新规则生成；规则文件的读取在后台线程进行，不放在读操作中
+            AppExecutorUtil.getAppExecutorService().execute(() -> {
+                if (project.isDisposed()) {
+                    return;
+                }
+                RuleEngine.getInstance(project).reloadIfChanged();
+                ReadAction.nonBlocking(this::computePreviewText)
+                        .withDocumentsCommitted(project)
+                        .inSmartMode(project)
+                        .expireWith(this)
+                        .coalesceBy(this)
+                        .finishOnUiThread(ModalityState.defaultModalityState(), this::updatePreview)
+                        .submit(AppExecutorUtil.getAppExecutorService());
+            });
+        }
+
+        private String computePreviewText() {
+            PsiFile psiFile = sourceFile.isValid() ? PsiManager.getInstance(project).findFile(sourceFile) : null;
+            if (!(psiFile instanceof PsiJavaFile javaFile)) {
+                return null;
+            }
+
+            String generation = RuleEngine.getInstance(project).getRules().fingerprint()
+                    + ":" + ProjectRootManager.getInstance(project).getModificationCount();
+            if (!generation.equals(cacheGeneration)) {
+                methodCache.clear();
+                cacheGeneration = generation;
+            }
+
+            String fileName = sourceFile.getName();
+            List<TextEdit> edits = new ArrayList<>();
+            int reused = 0;
+            for (PsiClass psiClass : javaFile.getClasses()) {
+                reused += collectClassEdits(psiClass, fileName, edits);
+            }
+            edits.sort(Comparator.comparingInt(TextEdit::offset));
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Preview of " + fileName + " recomputed, " + reused + " methods reused from cache.");
+            }
+            return TextEdit.apply(javaFile.getViewProvider().getContents(), edits);
+        }
+
+        /**
+         * 收集一个类及其各级内部类的修改，与批处理改写的遍历范围一致；返回从缓存复用的方法数
+         */
+        private int collectClassEdits(PsiClass psiClass, String fileName, List<TextEdit> edits) {
+            // 字段分析只看注解和声明类型，每次重算
+            TestFileRewriter fieldRewriter = new TestFileRewriter(project, fileName);
+            fieldRewriter.analyzeFields(psiClass);
+            edits.addAll(fieldRewriter.collectTextEdits());
+
+            int reused = 0;
+            for (PsiMethod method : psiClass.getMethods()) {
+                int methodStart = method.getTextRange().getStartOffset();
+                String key = method.getName() + ":" + ResultCache.contentHash(method.getText());
+                MethodEdits cached = methodCache.get(key);
+                if (cached == null) {
+                    TestFileRewriter methodRewriter = new TestFileRewriter(project, fileName);
+                    methodRewriter.analyzeMethod(method);
+                    List<TextEdit> relativeEdits = new ArrayList<>();
+                    for (TextEdit edit : methodRewriter.collectTextEdits()) {
+                        relativeEdits.add(new TextEdit(edit.offset() - methodStart, edit.length(), edit.replacement()));
+                    }
+                    cached = new MethodEdits(List.copyOf(relativeEdits));
+                    methodCache.put(key, cached);
+                } else {
+                    reused++;
+                }
+                for (TextEdit edit : cached.relativeEdits()) {
+                    edits.add(new TextEdit(edit.offset() + methodStart, edit.length(), edit.replacement()));
+                }
+            }
+            for (PsiClass innerClass : psiClass.getInnerClasses()) {
+                reused += collectClassEdits(innerClass, fileName, edits);
+            }
+            return reused;
+        }
+
+        private void updatePreview(String text) {
+            if (text == null) {
+                return;
+            }
+            Document previewDocument = FileDocumentManager.getInstance().getDocument(previewFile);
+            if (previewDocument == null || previewDocument.getText().equals(text)) {
+                return;
+            }
+            ApplicationManager.getApplication().runWriteAction(() ->
+                    CommandProcessor.getInstance().runUndoTransparentAction(() -> previewDocument.setText(text)));
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
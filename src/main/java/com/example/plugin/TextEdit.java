@@ -0,0 +1,24 @@
+package com.example.plugin;
+
+import java.util.List;
+
+/**
+ * 原文中的一次区间替换：从 offset 开始的 length 个字符替换为 replacement（删除时为空串）。
+ * 不依赖 PSI，可在 IDE 之外根据原文和修改列表还原改写结果。
+ */
+record TextEdit(int offset, int length, String replacement) {
+    /**
+     * 按顺序应用一组按偏移升序、互不重叠的修改
+     */
+    static String apply(CharSequence originalText, List<TextEdit> edits) {
+        StringBuilder result = new StringBuilder(originalText.length());
+        int cursor = 0;
+        for (TextEdit edit : edits) {
+            result.append(originalText, cursor, edit.offset());
+            result.append(edit.replacement());
+            cursor = edit.offset() + edit.length();
+        }
+        result.append(originalText, cursor, originalText.length());
+        return result.toString();
+    }
+}
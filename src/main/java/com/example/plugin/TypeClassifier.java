@@ -0,0 +1,70 @@
+package com.example.plugin;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 判断类型是否属于需要过滤的基本类型，过滤规则来自 {@link RuleEngine}。
+ * 原始类型总是基本类型；其余类型按规范文本（全限定类名，含泛型参数）匹配过滤规则，不需要解析。
+ * 判定结果按规范文本在项目范围内缓存，PsiType 和类名两种查询共用，规则重新加载时清空；可被多个工作线程并发使用。
+ */
+@Service(Service.Level.PROJECT)
+public final class TypeClassifier {
+    // 原始类型名，与 PsiPrimitiveType 一致
+    private static final Set<String> PRIMITIVE_NAMES = Set.of(
+            "int", "long", "short", "float", "double", "boolean", "char", "byte", "void"
+    );
+
+    private final Project project;
+    // 规范文本 -> 是否被过滤
+    private final ConcurrentMap<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    public TypeClassifier(Project project) {
+        this.project = project;
+    }
+
+    static TypeClassifier getInstance(Project project) {
+        return project.getService(TypeClassifier.class);
+    }
+
+    boolean isBasicType(PsiType type) {
+        if (type == null) return false;
+
+        // 检查是否为原始类型（如 int, long 等）
+        if (type instanceof PsiPrimitiveType) return true;
+
+        // 按类型过滤规则检查全限定类名
+        return matches(type.getCanonicalText());
+    }
+
+    /**
+     * 按类名判断（如 new 表达式或 mock(X.class) 中的类名），与对应 PsiType 的判定一致
+     */
+    boolean isBasicClassName(String className) {
+        if (className == null) return false;
+
+        if (PRIMITIVE_NAMES.contains(className)) return true;
+        return matches(className);
+    }
+
+    /**
+     * 过滤规则变化后清空按规范文本缓存的结果
+     */
+    void clearCache() {
+        cache.clear();
+    }
+
+    private TypeFilter typeFilter() {
+        return RuleEngine.getInstance(project).getRules().typeFilter();
+    }
+
+    private boolean matches(String canonicalText) {
+        return cache.computeIfAbsent(canonicalText, text -> typeFilter().matches(text));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.plugin;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 由 filter-type 规则编译出的类型匹配器，匹配时只做少量哈希查找，与规则数量无关：
+ * 精确规则直接查表；X&lt;*&gt; 规则按擦除后的类名查表；pkg.* 按所在包查表；
+ * pkg.** 依次查找所在包的各级前缀（相当于按包名分段的前缀树）。构建后只读，可并发使用。
+ */
+final class TypeFilter {
+    private final Set<String> exactTypes = new HashSet<>();
+    private final Set<String> erasedTypes = new HashSet<>();
+    private final Set<String> packages = new HashSet<>();
+    private final Set<String> packageTrees = new HashSet<>();
+
+    /**
+     * 添加一条规则，格式不合法时抛出 IllegalArgumentException
+     */
+    void addPattern(String pattern) {
+        String normalized = normalize(pattern);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Empty type pattern");
+        }
+        String base = stripArrayDimensions(normalized);
+        String dimensions = normalized.substring(base.length());
+
+        if (base.endsWith("<*>")) {
+            erasedTypes.add(base.substring(0, base.length() - 3) + dimensions);
+        } else if (base.endsWith(".**")) {
+            packageTrees.add(base.substring(0, base.length() - 3) + dimensions);
+        } else if (base.endsWith(".*")) {
+            packages.add(base.substring(0, base.length() - 2) + dimensions);
+        } else if (base.contains("*")) {
+            throw new IllegalArgumentException("Unsupported wildcard in type pattern: " + pattern);
+        } else {
+            exactTypes.add(normalized);
+        }
+    }
+
+    /**
+     * 判断类型的规范文本（如 PsiType.getCanonicalText() 的结果）是否被过滤
+     */
+    boolean matches(String canonicalText) {
+        String normalized = normalize(canonicalText);
+        if (exactTypes.contains(normalized)) {
+            return true;
+        }
+        if (erasedTypes.isEmpty() && packages.isEmpty() && packageTrees.isEmpty()) {
+            return false;
+        }
+
+        String erased = erase(normalized);
+        String base = stripArrayDimensions(erased);
+        String dimensions = erased.substring(base.length());
+        if (erasedTypes.contains(erased)) {
+            return true;
+        }
+
+        int lastDot = base.lastIndexOf('.');
+        if (lastDot < 0) {
+            return false;
+        }
+        String packageName = base.substring(0, lastDot);
+        if (packages.contains(packageName + dimensions)) {
+            return true;
+        }
+        if (!packageTrees.isEmpty()) {
+            for (int dot = packageName.length(); dot > 0; dot = packageName.lastIndexOf('.', dot - 1)) {
+                if (packageTrees.contains(packageName.substring(0, dot) + dimensions)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    // 去掉所有泛型参数，保留数组维数
+    private static String erase(String text) {
+        if (text.indexOf('<') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String stripArrayDimensions(String text) {
+        int end = text.length();
+        while (end >= 2 && text.startsWith("[]", end - 2)) {
+            end -= 2;
+        }
+        return text.substring(0, end);
+    }
+}
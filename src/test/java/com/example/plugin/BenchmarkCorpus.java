@@ -0,0 +1,110 @@
+package com.example.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的合成语料：Mockito 风格的 JUnit 测试类，
+ * 每个文件包含 @Mock 字段、局部变量实例化、mock(X.class)、when/verify 调用和集合类初始化。
+ * 被测的生产类单独生成，加入测试项目后测试类中的引用都能解析
+ */
+final class BenchmarkCorpus {
+    private static final int METHODS_PER_FILE = 6;
+
+    /**
+     * directory 为相对源码根的包目录
+     */
+    record SourceFile(String directory, String fileName, String text) {
+        String path() {
+            return directory + "/" + fileName;
+        }
+    }
+
+    private BenchmarkCorpus() {
+    }
+
+    static List<SourceFile> generate(int fileCount) {
+        List<SourceFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new SourceFile(directory(i), "Service" + i + "Test.java", generateTestClass(i)));
+        }
+        return files;
+    }
+
+    /**
+     * 与 {@link #generate} 对应的生产类：每个测试类一个文件，包含它用到的 Service、Repository、Client 等类
+     */
+    static List<SourceFile> generateProductionClasses(int fileCount) {
+        List<SourceFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new SourceFile(directory(i), "Service" + i + ".java", generateProductionClass(i)));
+        }
+        return files;
+    }
+
+    private static String directory(int index) {
+        return "com/example/bench/p" + index % 50;
+    }
+
+    private static String generateProductionClass(int index) {
+        return "package com.example.bench.p" + index % 50 + ";\n\n"
+                + "import java.util.*;\n\n"
+                + "public class Service" + index + " {\n"
+                + "    public Service" + index + "(Repository" + index + " repository, Client" + index + " client) {\n    }\n"
+                + "    public Result" + index + " process(String id, Helper" + index + " helper) {\n"
+                + "        return new Result" + index + "();\n    }\n"
+                + "}\n\n"
+                + "interface Repository" + index + " {\n    Entity" + index + " find(String id);\n}\n\n"
+                + "interface Client" + index + " {\n    List<String> listNames(String id);\n}\n\n"
+                + "class Helper" + index + " {\n"
+                + "    Helper" + index + "() {\n    }\n"
+                + "    Helper" + index + "(Map<String, Integer> counts) {\n    }\n"
+                + "}\n\n"
+                + "class Entity" + index + " {\n    Entity" + index + "(String id, int count) {\n    }\n}\n\n"
+                + "class Result" + index + " {\n    int getCount() {\n        return 0;\n    }\n}\n";
+    }
+
+    private static String generateTestClass(int index) {
+        StringBuilder builder = new StringBuilder(4096);
+        builder.append("package com.example.bench.p").append(index % 50).append(";\n\n")
+                .append("import org.junit.Before;\n")
+                .append("import org.junit.Test;\n")
+                .append("import org.mockito.Mock;\n")
+                .append("import java.util.*;\n\n")
+                .append("import static org.junit.Assert.*;\n")
+                .append("import static org.mockito.Mockito.*;\n\n")
+                .append("public class Service").append(index).append("Test {\n")
+                .append("    @Mock\n")
+                .append("    private Repository").append(index).append(" repository;\n")
+                .append("    @Mock\n")
+                .append("    private Client").append(index).append(" client;\n")
+                .append("    private Service").append(index).append(" service;\n\n")
+                .append("    @Before\n")
+                .append("    public void setUp() {\n")
+                .append("        service = new Service").append(index).append("(repository, client);\n")
+                .append("    }\n");
+
+        for (int m = 0; m < METHODS_PER_FILE; m++) {
+            builder.append("\n    @Test\n")
+                    .append("    public void testCase").append(m).append("() throws Exception {\n")
+                    .append("        String id = \"id-").append(m).append("\";\n")
+                    .append("        int expected = ").append(m).append(";\n")
+                    .append("        List<String> names = new ArrayList<>();\n")
+                    .append("        Map<String, Integer> counts = new HashMap<>();\n")
+                    .append("        Helper").append(index).append(" helper = mock(Helper").append(index).append(".class);\n")
+                    .append("        Entity").append(index).append(" entity = new Entity").append(index).append("(id, expected);\n")
+                    .append("        when(repository.find(anyString())).thenReturn(entity);\n")
+                    .append("        doReturn(names).when(client).listNames(id);\n")
+                    .append("        Result").append(index).append(" result = service.process(id, helper);\n")
+                    .append("        helper = new Helper").append(index).append("(counts);\n")
+                    .append("        for (String name : names) {\n")
+                    .append("            counts.put(name, name.length());\n")
+                    .append("        }\n")
+                    .append("        verify(repository).find(id);\n")
+                    .append("        verifyNoMoreInteractions(client);\n")
+                    .append("        assertEquals(expected, result.getCount());\n")
+                    .append("    }\n");
+        }
+        return builder.append("}\n").toString();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.plugin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CsvRowsTest {
+    @Test
+    public void formatQuotesEveryField() {
+        assertEquals("\"FooTest.java\",\"testBar\",\"com.a.Bar\",\"true\"",
+                CsvRows.format(new String[]{"FooTest.java", "testBar", "com.a.Bar", "true"}));
+    }
+
+    @Test
+    public void formatDoublesEmbeddedQuotes() {
+        assertEquals("\"say \"\"hi\"\"\",\"\"", CsvRows.format(new String[]{"say \"hi\"", ""}));
+    }
+
+    @Test
+    public void parseReversesFormat() {
+        String[] row = {"a,b", "say \"hi\"", "", "java.util.Map<java.lang.String, java.lang.Integer>"};
+        assertArrayEquals(row, CsvRows.parse(CsvRows.format(row)));
+    }
+
+    @Test
+    public void parseAcceptsUnquotedFields() {
+        assertArrayEquals(new String[]{"a", "b c", "\"d\"-e", ""}, CsvRows.parse("a,b c,\"\"\"d\"\"\"-e,"));
+    }
+
+    @Test
+    public void parseEmptyLineGivesOneEmptyField() {
+        assertArrayEquals(new String[]{""}, CsvRows.parse(""));
+    }
+}
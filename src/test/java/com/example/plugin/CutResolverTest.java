@@ -0,0 +1,23 @@
+package com.example.plugin;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+public class CutResolverTest extends MockitoFixtureTestCase {
+    public void testSingleCandidateIsReturned() {
+        VirtualFile service = addJavaFile("a/Service.java", "package a;\n\npublic class Service {\n}\n").getVirtualFile();
+        VirtualFile test = addJavaFile("b/ServiceTest.java", "package b;\n\npublic class ServiceTest {\n}\n").getVirtualFile();
+
+        CutResolver resolver = CutResolver.build(getProject());
+        assertEquals(service, resolver.find(test, "Service"));
+        assertNull(resolver.find(test, "Missing"));
+    }
+
+    public void testSamePackageCandidateWins() {
+        addJavaFile("a/Service.java", "package a;\n\npublic class Service {\n}\n");
+        VirtualFile samePackage = addJavaFile("b/Service.java", "package b;\n\npublic class Service {\n}\n").getVirtualFile();
+        addJavaFile("c/Service.java", "package c;\n\npublic class Service {\n}\n");
+        VirtualFile test = addJavaFile("b/ServiceTest.java", "package b;\n\npublic class ServiceTest {\n}\n").getVirtualFile();
+
+        assertEquals(samePackage, CutResolver.build(getProject()).find(test, "Service"));
+    }
+}
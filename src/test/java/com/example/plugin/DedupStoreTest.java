@@ -0,0 +1,74 @@
+package com.example.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DedupStoreTest {
+    private static final String HASH = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void withoutPackageReplacesQualifiedNamesOnly() {
+        assertEquals("\u0000.Bar", DedupStore.withoutPackage("com.a.Bar", "com.a"));
+        assertEquals("new \u0000.Bar(\u0000.Baz.X)", DedupStore.withoutPackage("new com.a.Bar(com.a.Baz.X)", "com.a"));
+        // 包名只是更长名字的一部分时不替换
+        assertEquals("org.com.a.Bar", DedupStore.withoutPackage("org.com.a.Bar", "com.a"));
+        assertEquals("xcom.a.Bar", DedupStore.withoutPackage("xcom.a.Bar", "com.a"));
+        assertEquals("com.ab.Bar", DedupStore.withoutPackage("com.ab.Bar", "com.a"));
+        assertEquals("com.a.Bar", DedupStore.withoutPackage("com.a.Bar", ""));
+    }
+
+    @Test
+    public void withPackageRestoresPlaceholder() {
+        assertEquals("org.b.c.Bar", DedupStore.withPackage(DedupStore.withoutPackage("com.a.Bar", "com.a"), "org.b.c"));
+        assertEquals("java.lang.String", DedupStore.withPackage("java.lang.String", "org.b.c"));
+    }
+
+    @Test
+    public void storedResultIsTranslatedToAnotherPackage() throws IOException {
+        DedupStore store = new DedupStore(temporaryFolder.newFolder("dedup"), "rules");
+        // "package com.a;" 与 "package org.b.c;"：包名分别位于 [8, 13) 和 [8, 15)
+        DedupStore.Key sourceKey = new DedupStore.Key(HASH, "com.a", 8, 13, true);
+        DedupStore.Key targetKey = new DedupStore.Key(HASH, "org.b.c", 8, 15, true);
+        store.store(sourceKey,
+                List.of(new TextEdit(2, 1, "x"), new TextEdit(30, 3, "new com.a.Bar()")),
+                List.of(new Instantiation("testBar", "com.a.Bar", false)));
+
+        DedupStore.Hit hit = store.load(targetKey);
+        assertNotNull(hit);
+        assertEquals(List.of(new TextEdit(2, 1, "x"), new TextEdit(32, 3, "new org.b.c.Bar()")), hit.edits());
+        assertEquals(List.of(new Instantiation("testBar", "org.b.c.Bar", false)), hit.records());
+    }
+
+    @Test
+    public void missingEntryLoadsNull() throws IOException {
+        DedupStore store = new DedupStore(temporaryFolder.newFolder("dedup"), "rules");
+        assertNull(store.load(new DedupStore.Key(HASH, "com.a", 8, 13, true)));
+    }
+
+    @Test
+    public void nonPortableResultIsNotStored() throws IOException {
+        File storeDir = temporaryFolder.newFolder("dedup");
+        DedupStore store = new DedupStore(storeDir, "rules");
+        DedupStore.Key key = new DedupStore.Key(HASH, "com.a", 8, 13, false);
+        store.store(key, List.of(new TextEdit(30, 3, "x")), List.of());
+        assertNull(store.load(key));
+    }
+
+    @Test
+    public void editOverlappingPackageNameIsNotStored() throws IOException {
+        DedupStore store = new DedupStore(temporaryFolder.newFolder("dedup"), "rules");
+        DedupStore.Key key = new DedupStore.Key(HASH, "com.a", 8, 13, true);
+        store.store(key, List.of(new TextEdit(12, 3, "b;")), List.of());
+        assertNull(store.load(key));
+    }
+}
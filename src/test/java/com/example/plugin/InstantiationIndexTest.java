@@ -0,0 +1,94 @@
+package com.example.plugin;
+
+import com.intellij.psi.PsiJavaFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 索引导出的记录与改写流程的记录一致：按需导入、文件中声明的类、类型参数和 var 声明都需要与解析结果相同
+ */
+public class InstantiationIndexTest extends MockitoFixtureTestCase {
+    public void testIndexAgreesWithRewriter() {
+        addJavaFile("other/Helper.java", "package other;\n\npublic class Helper {\n}\n");
+        addJavaFile("demo/Service.java", "package demo;\n\npublic class Service {\n}\n");
+        PsiJavaFile testFile = addJavaFile("demo/FooTest.java", """
+                package demo;
+
+                import java.util.*;
+                import other.*;
+                import org.junit.Test;
+                import org.mockito.Mock;
+
+                import static org.mockito.Mockito.mock;
+
+                public class FooTest {
+                    @Mock
+                    List<Helper> helpers;
+                    @Mock
+                    Service service;
+
+                    @Test
+                    public void testA() {
+                        Helper helper = new Helper();
+                        Service local = new Service();
+                        Map<String, Helper> byName = new HashMap<>();
+                        var nested = new Nested();
+                        Helper mocked;
+                        mocked = mock(Helper.class);
+                        Nested assigned;
+                        assigned = new Nested();
+                    }
+
+                    static class Nested {
+                    }
+                }
+                """);
+
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), testFile.getName());
+        rewriter.createModifiedContent(testFile);
+        List<String> expected = new ArrayList<>();
+        for (Instantiation record : rewriter.getRecords()) {
+            expected.add(record.testCase() + "|" + record.className() + "|" + record.mocked());
+        }
+
+        InstantiationIndexService indexService = InstantiationIndexService.getInstance(getProject());
+        List<String[]> indexed = new ArrayList<>(indexService.collectInstantiations(indexService.getIndexedClassNames()));
+        indexed.addAll(indexService.collectUnresolvedInstantiations(indexService.getFilesWithUnresolvedNames()));
+        List<String> actual = new ArrayList<>();
+        for (String[] record : indexed) {
+            if (record[0].equals(testFile.getName())) {
+                actual.add(record[1] + "|" + record[2] + "|" + record[3]);
+            }
+        }
+
+        expected.sort(null);
+        actual.sort(null);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    public void testFindResolvesOnDemandImports() {
+        addJavaFile("other/Helper.java", "package other;\n\npublic class Helper {\n}\n");
+        addJavaFile("demo/BarTest.java", """
+                package demo;
+
+                import other.*;
+                import org.junit.Test;
+
+                public class BarTest {
+                    @Test
+                    public void testB() {
+                        Helper helper;
+                        helper = new Helper();
+                    }
+                }
+                """);
+
+        InstantiationIndexService indexService = InstantiationIndexService.getInstance(getProject());
+        List<String[]> records = indexService.findInstantiations("other.Helper");
+        assertEquals(1, records.size());
+        assertEquals("testB", records.get(0)[1]);
+        assertTrue(indexService.findInstantiations("demo.Helper").isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstantiationStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String[] record(int row) {
+        return new String[]{"Suite" + row % 3 + "Test.java", "test" + row, "com.a.Type" + row % 7, String.valueOf(row % 5 == 0)};
+    }
+
+    private static List<String[]> readRows(InstantiationStore store, long from, long to) {
+        StringDictionary symbols = store.symbols();
+        List<String[]> rows = new ArrayList<>();
+        store.forEach(from, to, (suite, testCase, className, mocked) -> rows.add(
+                new String[]{symbols.valueOf(suite), symbols.valueOf(testCase), symbols.valueOf(className), String.valueOf(mocked)}));
+        return rows;
+    }
+
+    @Test
+    public void rowsRoundTripAcrossSpilledSegments() throws IOException {
+        File spillDir = temporaryFolder.newFolder("spill");
+        // 每两行转存一次；超过 64 行，标志位跨越多个 long
+        int rowCount = 130;
+        try (InstantiationStore store = new InstantiationStore(2, spillDir)) {
+            for (int row = 0; row < rowCount; row++) {
+                store.append(record(row));
+            }
+            assertEquals(rowCount, store.size());
+            String[] spillFiles = spillDir.list();
+            assertNotNull(spillFiles);
+            assertEquals(1, spillFiles.length);
+
+            List<String[]> rows = readRows(store, 0, rowCount);
+            assertEquals(rowCount, rows.size());
+            for (int row = 0; row < rowCount; row++) {
+                assertArrayEquals(record(row), rows.get(row));
+            }
+
+            List<String[]> range = readRows(store, 63, 67);
+            assertEquals(4, range.size());
+            for (int i = 0; i < range.size(); i++) {
+                assertArrayEquals(record(63 + i), range.get(i));
+            }
+        }
+        assertArrayEquals(new String[0], spillDir.list());
+    }
+
+    @Test
+    public void fileRecordsShareTheSuiteName() throws IOException {
+        try (InstantiationStore store = new InstantiationStore(1 << 20, temporaryFolder.getRoot())) {
+            store.append("FooTest.java", List.of(new Instantiation("CLASS_LEVEL", "com.a.Bar", true),
+                    new Instantiation("testFoo", "com.a.Bar", false)));
+            store.append("EmptyTest.java", List.of());
+            assertEquals(2, store.size());
+            List<String[]> rows = readRows(store, 0, 2);
+            assertArrayEquals(new String[]{"FooTest.java", "CLASS_LEVEL", "com.a.Bar", "true"}, rows.get(0));
+            assertArrayEquals(new String[]{"FooTest.java", "testFoo", "com.a.Bar", "false"}, rows.get(1));
+        }
+    }
+
+    @Test
+    public void smallStoreStaysOnHeap() throws IOException {
+        File spillDir = new File(temporaryFolder.getRoot(), "unused");
+        try (InstantiationStore store = new InstantiationStore(1 << 20, spillDir)) {
+            store.append(record(0));
+            store.append(record(1));
+            assertEquals(2, store.size());
+            assertArrayEquals(record(1), readRows(store, 1, 2).get(0));
+        }
+        assertFalse(spillDir.exists());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.plugin;
+
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.util.PsiTreeUtil;
+
+public class MockitoCallMatcherTest extends MockitoFixtureTestCase {
+    private PsiJavaFile file;
+    private MockitoCallMatcher matcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        addJavaFile("demo/Repository.java", """
+                package demo;
+
+                public interface Repository {
+                    String find(String id);
+                }
+                """);
+        addJavaFile("demo/Factory.java", """
+                package demo;
+
+                public class Factory {
+                    public static <T> T mock(Class<T> type) {
+                        return null;
+                    }
+                }
+                """);
+        file = addJavaFile("demo/MatcherTest.java", """
+                package demo;
+
+                import org.mockito.BDDMockito;
+                import org.mockito.Mockito;
+
+                import static org.mockito.BDDMockito.given;
+                import static org.mockito.BDDMockito.then;
+                import static org.mockito.Mockito.*;
+
+                public class MatcherTest {
+                    void run(Repository repository) {
+                        Repository a = mock(Repository.class);
+                        Repository b = Mockito.spy(a);
+                        Repository c = BDDMockito.mock(Repository.class);
+                        Repository d = Factory.mock(Repository.class);
+                        String e = Mockito.mock(Repository.class).find("e");
+                        when(a.find("x")).thenReturn("y");
+                        Mockito.verify(a).find("x");
+                        doReturn("y").when(b).find("x");
+                        given(c.find("x")).willReturn("y");
+                        BDDMockito.willThrow(new RuntimeException()).given(c).find("z");
+                        then(c).should().find("x");
+                        whenReady(a);
+                        repository.find("mock");
+                    }
+
+                    void whenReady(Repository repository) {
+                    }
+                }
+                """);
+        matcher = MockitoCallMatcher.getInstance(getProject());
+    }
+
+    public void testMockCallsAreRecognizedThroughStaticImportsAndQualifiers() {
+        assertTrue(matcher.isMockCall(call("mock(Repository.class)")));
+        assertTrue(matcher.isMockCall(call("Mockito.spy(a)")));
+        // BDDMockito.mock 声明在父类 Mockito 中
+        assertTrue(matcher.isMockCall(call("BDDMockito.mock(Repository.class)")));
+    }
+
+    public void testSameNamedMethodOfAnotherClassIsNotAMockCall() {
+        assertFalse(matcher.isMockCall(call("Factory.mock(Repository.class)")));
+    }
+
+    public void testMockCallAtStartOfChain() {
+        PsiExpression initializer = call("Mockito.mock(Repository.class).find(\"e\")");
+        assertTrue(matcher.startsWithMockCall(initializer));
+        assertFalse(matcher.isMockCall((PsiMethodCallExpression) initializer));
+        assertFalse(matcher.startsWithMockCall(call("Factory.mock(Repository.class)")));
+    }
+
+    public void testStubbingAndVerificationAreRemoved() {
+        assertTrue(matcher.isRemovedCall(call("when(a.find(\"x\")).thenReturn(\"y\")")));
+        assertTrue(matcher.isRemovedCall(call("Mockito.verify(a).find(\"x\")")));
+        assertTrue(matcher.isRemovedCall(call("doReturn(\"y\").when(b).find(\"x\")")));
+    }
+
+    public void testBddMockitoCallsAreRemoved() {
+        assertTrue(matcher.isRemovedCall(call("given(c.find(\"x\")).willReturn(\"y\")")));
+        assertTrue(matcher.isRemovedCall(call("BDDMockito.willThrow(new RuntimeException()).given(c).find(\"z\")")));
+        assertTrue(matcher.isRemovedCall(call("then(c).should().find(\"x\")")));
+    }
+
+    public void testUnrelatedCallsAreKept() {
+        assertFalse(matcher.isRemovedCall(call("whenReady(a)")));
+        assertFalse(matcher.isRemovedCall(call("repository.find(\"mock\")")));
+        assertFalse(matcher.isMockCall(call("repository.find(\"mock\")")));
+    }
+
+    private PsiMethodCallExpression call(String text) {
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(file, PsiMethodCallExpression.class)) {
+            if (call.getText().equals(text)) {
+                return call;
+            }
+        }
+        throw new AssertionError("No call with text: " + text);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.plugin;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import com.intellij.util.PathUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+/**
+ * 改写相关测试的公共基类：轻量 Java 项目带 mock JDK 以及测试 classpath 上的 JUnit 4 和 Mockito 库，
+ * 测试代码中的 Mockito 调用和注解都能解析到真实的声明
+ */
+abstract class MockitoFixtureTestCase extends LightJavaCodeInsightFixtureTestCase {
+    private static final LightProjectDescriptor DESCRIPTOR = new ProjectDescriptor(LanguageLevel.JDK_17) {
+        @Override
+        public void configureModule(@NotNull Module module, @NotNull ModifiableRootModel model, @NotNull ContentEntry contentEntry) {
+            super.configureModule(module, model, contentEntry);
+            addJarLibrary(model, "junit", org.junit.Test.class);
+            addJarLibrary(model, "mockito", org.mockito.Mockito.class);
+        }
+    };
+
+    @Override
+    protected @NotNull LightProjectDescriptor getProjectDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    /**
+     * 在源码根下按包路径添加一个 Java 文件
+     */
+    protected PsiJavaFile addJavaFile(String path, String text) {
+        return (PsiJavaFile) myFixture.addFileToProject(path, text);
+    }
+
+    private static void addJarLibrary(ModifiableRootModel model, String name, Class<?> anchor) {
+        File jar = new File(PathUtil.getJarPathForClass(anchor));
+        PsiTestUtil.addLibrary(model, name, jar.getParent(), jar.getName());
+    }
+}
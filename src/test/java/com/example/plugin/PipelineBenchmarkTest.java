@@ -0,0 +1,234 @@
+package com.example.plugin;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 改写流程的性能基准，用于在正式跑数据集之前发现性能回退。
+ * 在 {@link MockitoFixtureTestCase} 的轻量 Java 项目中运行，被测的生产类也加入项目，
+ * Mockito 调用识别、类型判断和测试文件发现都走与真实项目相同的解析和索引路径。
+ * <p>
+ * 默认跳过；运行：./gradlew test --tests '*PipelineBenchmarkTest' -Pbenchmark [-PbenchmarkSizes=100,1000,10000] [-PbenchmarkRounds=3]
+ * <p>
+ * 对每个语料规模依次测量：测试文件发现、两种改写引擎的 createModifiedContent、基本类型判断和 XLSX 导出，
+ * 报告吞吐量、当前线程的分配量和堆峰值，结果写到 build/benchmark/benchmark_results.csv。每个基准先完整预热一轮。
+ * 不依赖 IDE 的部分另有 JMH 微基准（src/jmh）。
+ */
+public class PipelineBenchmarkTest extends MockitoFixtureTestCase {
+    private static final Logger logger = Logger.getLogger(PipelineBenchmarkTest.class.getName());
+
+    private record Measurement(String benchmark, int files, long operations, long elapsedNanos, long allocatedBytes, long peakHeapBytes) {
+        double operationsPerSecond() {
+            return operations * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+        }
+    }
+
+    @Override
+    protected boolean shouldRunTest() {
+        return Boolean.getBoolean("codeparser.benchmark") && super.shouldRunTest();
+    }
+
+    public void testRewritePipeline() throws IOException {
+        List<Integer> sizes = Arrays.stream(System.getProperty("codeparser.benchmark.sizes", "100,1000,10000").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        int rounds = Math.max(1, Integer.getInteger("codeparser.benchmark.rounds", 3));
+        File outputDir = new File(System.getProperty("codeparser.benchmark.out", "build/benchmark"));
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (int size : sizes) {
+            measurements.addAll(runCorpus(size, rounds, outputDir));
+        }
+        writeReport(measurements, outputDir.toPath().resolve("benchmark_results.csv"));
+    }
+
+    private List<Measurement> runCorpus(int size, int rounds, File outputDir) {
+        logger.info("Benchmarking " + size + " generated test files.");
+        // 语料放在源码根下与包名一致的目录，测完整体删除，下一个规模的发现阶段只看到自己的文件
+        for (BenchmarkCorpus.SourceFile file : BenchmarkCorpus.generateProductionClasses(size)) {
+            addJavaFile(file.path(), file.text());
+        }
+        List<PsiJavaFile> testFiles = new ArrayList<>(size);
+        for (BenchmarkCorpus.SourceFile file : BenchmarkCorpus.generate(size)) {
+            testFiles.add(addJavaFile(file.path(), file.text()));
+        }
+
+        try {
+            return measureCorpus(testFiles, rounds, outputDir);
+        } finally {
+            // 包目录 p{n} 的上一级，即 com/example/bench
+            VirtualFile corpusRoot = testFiles.get(0).getVirtualFile().getParent().getParent();
+            WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+                try {
+                    corpusRoot.delete(this);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private List<Measurement> measureCorpus(List<PsiJavaFile> testFiles, int rounds, File outputDir) {
+        int size = testFiles.size();
+        List<Measurement> measurements = new ArrayList<>();
+        // 测试文件名 -> 该文件的实例化记录
+        Map<String, List<Instantiation>> records = new LinkedHashMap<>();
+
+        // 测试文件发现：注解索引查询
+        measurements.add(measure("discover-test-files", size, rounds, () -> ReadAction.compute(() -> {
+            Set<VirtualFile> found = TestFileDiscovery.findTestFiles(getProject());
+            assertEquals(size, found.size());
+            return (long) found.size();
+        })));
+
+        // PSI_COPY：每个文件从文本解析副本并修改 PSI
+        measurements.add(measure("rewrite-psi-copy", size, rounds, () -> ReadAction.compute(() -> {
+            long operations = 0;
+            for (PsiFile file : testFiles) {
+                new TestFileRewriter(getProject(), file.getName()).createModifiedContent(file.getText());
+                operations++;
+            }
+            return operations;
+        })));
+
+        // TEXT_OFFSETS：只读分析项目中的文件并按偏移改写文本；同时收集记录供后续基准使用
+        measurements.add(measure("rewrite-text-offsets", size, rounds, () -> ReadAction.compute(() -> {
+            records.clear();
+            long operations = 0;
+            for (PsiJavaFile file : testFiles) {
+                TestFileRewriter rewriter = new TestFileRewriter(getProject(), file.getName());
+                rewriter.createModifiedContent(file);
+                records.put(file.getName(), rewriter.getRecords());
+                operations++;
+            }
+            return operations;
+        })));
+        // 每个生成的测试文件都有 @Mock 字段和局部变量实例化
+        long recordCount = records.values().stream().mapToLong(List::size).sum();
+        assertTrue("Expected at least 3 records per file, got " + recordCount, recordCount >= 3L * size);
+        assertEnginesAgree(testFiles);
+
+        // 基本类型判断：对全部记录的类名和常见基本类型逐一查询；每轮清空缓存，测量规则匹配路径
+        List<String> classNames = new ArrayList<>((int) recordCount + 4);
+        for (List<Instantiation> fileRecords : records.values()) {
+            for (Instantiation record : fileRecords) {
+                classNames.add(record.className());
+            }
+        }
+        classNames.addAll(List.of("java.lang.String", "int", "java.util.List", "byte[]"));
+        TypeClassifier typeClassifier = TypeClassifier.getInstance(getProject());
+        measurements.add(measure("is-basic-type", size, rounds, () -> ReadAction.compute(() -> {
+            typeClassifier.clearCache();
+            long operations = 0;
+            for (String className : classNames) {
+                typeClassifier.isBasicClassName(className);
+                operations++;
+            }
+            return operations;
+        })));
+
+        // XLSX 导出：与分片输出相同，按文件编号化写入记录存储，再按编号导出
+        File xlsxFile = new File(outputDir, "benchmark_export_" + size + ".xlsx");
+        measurements.add(measure("export-xlsx", size, rounds, () -> {
+            InstantiationXlsxWriter xlsxWriter = new InstantiationXlsxWriter(xlsxFile);
+            try (InstantiationStore store = new InstantiationStore(1 << 20, outputDir)) {
+                for (Map.Entry<String, List<Instantiation>> entry : records.entrySet()) {
+                    store.append(entry.getKey(), entry.getValue());
+                }
+                xlsxWriter.appendRows(store, 0, store.size());
+                return store.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                xlsxWriter.close();
+            }
+        }));
+        return measurements;
+    }
+
+    /**
+     * 基准的结果也要正确：抽样检查两种引擎对同一文件得到相同的修改列表和记录
+     */
+    private void assertEnginesAgree(List<PsiJavaFile> testFiles) {
+        int step = Math.max(1, testFiles.size() / 20);
+        ReadAction.run(() -> {
+            for (int i = 0; i < testFiles.size(); i += step) {
+                PsiJavaFile file = testFiles.get(i);
+                TestFileRewriter psiCopy = new TestFileRewriter(getProject(), file.getName());
+                TestFileRewriter textOffsets = new TestFileRewriter(getProject(), file.getName());
+                psiCopy.createModifiedContent(file.getText());
+                String rewritten = textOffsets.createModifiedContent(file);
+                assertEquals(file.getName(), psiCopy.getTextEdits(), textOffsets.getTextEdits());
+                assertEquals(file.getName(), psiCopy.getRecords(), textOffsets.getRecords());
+                assertFalse(file.getName(), rewritten.contains("when("));
+            }
+        });
+    }
+
+    /**
+     * 预热一轮后运行 rounds 轮，报告各轮合计的吞吐量、当前线程分配量和堆峰值
+     */
+    private static Measurement measure(String benchmark, int files, int rounds, Supplier<Long> body) {
+        body.get();
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long operations = 0;
+        for (int i = 0; i < rounds; i++) {
+            operations += body.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        Measurement measurement = new Measurement(benchmark, files, operations, elapsed, allocated, peakHeap);
+        logger.info(String.format("%s [%d files]: %.1f ops/s, %.1f MB allocated, %.1f MB peak heap",
+                benchmark, files, measurement.operationsPerSecond(), allocated / 1048576.0, peakHeap / 1048576.0));
+        return measurement;
+    }
+
+    // 当前线程累计分配的字节数；JVM 不支持时返回 -1
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()) {
+            return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void writeReport(List<Measurement> measurements, Path reportPath) throws IOException {
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            writer.write("\"Benchmark\",\"Files\",\"Operations\",\"Elapsed ms\",\"Ops/s\",\"Allocated MB\",\"Peak Heap MB\"\n");
+            for (Measurement m : measurements) {
+                writer.write(String.format(Locale.ROOT, "\"%s\",%d,%d,%.1f,%.1f,%.1f,%.1f%n", m.benchmark(), m.files(), m.operations(),
+                        m.elapsedNanos() / 1_000_000.0, m.operationsPerSecond(), m.allocatedBytes() / 1048576.0, m.peakHeapBytes() / 1048576.0));
+            }
+        }
+        logger.info("Benchmark results saved to: " + reportPath);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.plugin;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PsiTestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 分析阶段的内存检查：在固定的最大堆下对大量生成的测试文件运行完整流程，期间定期在 GC 之后采样堆占用，
+ * 检查后三分之一的采样没有比前三分之一明显增长，即每批结束后卸下的 PSI 和 AST 确实被回收、堆占用不随已处理的文件数增长。
+ * 语料写在本地磁盘的临时目录中并作为源码根加入项目，文件内容不常驻堆。
+ * <p>
+ * 默认跳过；运行：./gradlew memoryTest [-PmemoryTestFiles=20000]（-Xmx512m）
+ */
+public class PipelineMemoryTest extends MockitoFixtureTestCase {
+    private static final Logger logger = Logger.getLogger(PipelineMemoryTest.class.getName());
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 2000;
+    // GC 之后的堆占用允许的波动
+    private static final long TOLERANCE_BYTES = 64L * 1024 * 1024;
+
+    private File corpusDir;
+    private File resultRoot;
+    private VirtualFile corpusRoot;
+
+    @Override
+    protected boolean shouldRunTest() {
+        return Boolean.getBoolean("codeparser.memoryTest") && super.shouldRunTest();
+    }
+
+    // 流程不能在 EDT 上运行
+    @Override
+    protected boolean runInDispatchThread() {
+        return false;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            if (corpusRoot != null) {
+                PsiTestUtil.removeContentEntry(getModule(), corpusRoot);
+            }
+            if (corpusDir != null) {
+                FileUtil.delete(corpusDir);
+            }
+            if (resultRoot != null) {
+                FileUtil.delete(resultRoot);
+            }
+        } catch (Throwable e) {
+            addSuppressedException(e);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testHeapStaysFlat() throws Exception {
+        int size = Integer.getInteger("codeparser.memoryTest.files", 20000);
+        corpusDir = FileUtil.createTempDirectory("codeparser-memory", null);
+        resultRoot = FileUtil.createTempDirectory("codeparser-memory-result", null);
+        writeCorpus(BenchmarkCorpus.generateProductionClasses(size), corpusDir.toPath());
+        writeCorpus(BenchmarkCorpus.generate(size), corpusDir.toPath());
+        VfsUtil.markDirtyAndRefresh(false, true, true, corpusDir);
+        corpusRoot = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(corpusDir);
+        assertNotNull(corpusRoot);
+        PsiTestUtil.addSourceContentToRoots(getModule(), corpusRoot);
+
+        PipelineConfig config = new PipelineConfig(resultRoot)
+                .setIncremental(false)
+                .setOutputFormats(EnumSet.of(PipelineConfig.OutputFormat.JSONL));
+        List<Long> samples = Collections.synchronizedList(new ArrayList<>());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleWithFixedDelay(() -> samples.add(liveHeapBytes()), SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        PipelineMetrics metrics;
+        try {
+            metrics = new TestFilesPipeline(getProject(), config).run(new EmptyProgressIndicator());
+        } finally {
+            sampler.shutdownNow();
+            sampler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(size, metrics.getFileCount());
+
+        List<Long> heap = List.copyOf(samples);
+        assertTrue("Too few heap samples, increase -PmemoryTestFiles: " + heap.size(), heap.size() >= 6);
+        int third = heap.size() / 3;
+        long early = Collections.max(heap.subList(0, third));
+        long late = Collections.max(heap.subList(heap.size() - third, heap.size()));
+        logger.info(String.format("Heap after GC over %d files: early max %.1f MB, late max %.1f MB, %d samples",
+                size, early / 1048576.0, late / 1048576.0, heap.size()));
+        assertTrue(String.format("Heap grew from %.1f MB to %.1f MB while analyzing", early / 1048576.0, late / 1048576.0),
+                late <= early + TOLERANCE_BYTES);
+    }
+
+    private static void writeCorpus(List<BenchmarkCorpus.SourceFile> files, Path root) throws IOException {
+        for (BenchmarkCorpus.SourceFile file : files) {
+            Path path = root.resolve(file.path());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.text(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long liveHeapBytes() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
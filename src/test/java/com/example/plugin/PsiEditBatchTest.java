@@ -0,0 +1,91 @@
+package com.example.plugin;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.List;
+
+public class PsiEditBatchTest extends MockitoFixtureTestCase {
+    private PsiJavaFile file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = addJavaFile("demo/Sample.java", """
+                package demo;
+
+                class Sample {
+                    void run() {
+                        Object a = new StringBuilder(new String("x"));
+                        System.out.println(a);
+                        Object b = new Object();
+                    }
+                }
+                """);
+    }
+
+    public void testTextEditsAreSortedByOffset() {
+        PsiEditBatch batch = new PsiEditBatch();
+        batch.replaceExpression(newExpression("new Object()"), "\"b\"");
+        batch.delete(statement("System.out.println(a);"));
+        batch.replaceExpression(newExpression("new StringBuilder(new String(\"x\"))"), "\"a\"");
+
+        List<TextEdit> edits = batch.toTextEdits();
+        assertEquals(3, edits.size());
+        assertTrue(edits.get(0).offset() < edits.get(1).offset());
+        assertTrue(edits.get(1).offset() < edits.get(2).offset());
+        assertEquals("", edits.get(1).replacement());
+    }
+
+    public void testEditInsideReplacedRangeIsDropped() {
+        PsiEditBatch batch = new PsiEditBatch();
+        // 内层先登记，外层替换仍然覆盖它
+        batch.replaceExpression(newExpression("new String(\"x\")"), "\"inner\"");
+        batch.replaceExpression(newExpression("new StringBuilder(new String(\"x\"))"), "\"outer\"");
+
+        List<TextEdit> edits = batch.toTextEdits();
+        assertEquals(1, edits.size());
+        assertEquals("\"outer\"", edits.get(0).replacement());
+        String rewritten = TextEdit.apply(file.getText(), edits);
+        assertTrue(rewritten.contains("Object a = \"outer\";"));
+        assertFalse(rewritten.contains("inner"));
+    }
+
+    public void testSameTargetIsRecordedOnce() {
+        PsiEditBatch batch = new PsiEditBatch();
+        PsiNewExpression expression = newExpression("new Object()");
+        batch.replaceExpression(expression, "\"first\"");
+        batch.replaceExpression(expression, "\"second\"");
+
+        assertTrue(batch.isTarget(expression));
+        assertEquals(1, batch.getEdits().size());
+        assertEquals("\"first\"", batch.toTextEdits().get(0).replacement());
+    }
+
+    public void testApplyOnPhysicalFileMatchesTextEdits() {
+        PsiEditBatch batch = new PsiEditBatch();
+        batch.replaceExpression(newExpression("new Object()"), "\"b\"");
+        batch.replaceExpression(newExpression("new StringBuilder(new String(\"x\"))"), "\"a\"");
+        String expected = TextEdit.apply(file.getText(), batch.toTextEdits());
+
+        batch.apply(getProject());
+        assertEquals(expected, file.getText());
+    }
+
+    private PsiNewExpression newExpression(String text) {
+        return find(PsiNewExpression.class, text);
+    }
+
+    private PsiStatement statement(String text) {
+        return find(PsiStatement.class, text);
+    }
+
+    private <T extends PsiElement> T find(Class<T> type, String text) {
+        for (T element : PsiTreeUtil.findChildrenOfType(file, type)) {
+            if (element.getText().equals(text)) {
+                return element;
+            }
+        }
+        throw new AssertionError("No " + type.getSimpleName() + " with text: " + text);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.plugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class Stage1RebuilderTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path writeSource(String relativePath, String text) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("src").resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Test
+    public void sameNamedFilesAreRebuiltToTheirOwnPaths() throws IOException {
+        String textA = "class FooTest { int a; }";
+        String textB = "class FooTest { int b; }";
+        Path sourceA = writeSource("a/FooTest.java", textA);
+        Path sourceB = writeSource("b/FooTest.java", textB);
+        File archive = temporaryFolder.newFile("parsed_tests_stage1.zip");
+        try (EditArchiveWriter writer = new EditArchiveWriter(archive)) {
+            writer.write("FooTest.java", "a/FooTest.java", sourceA.toString(), ResultCache.contentHash(textA),
+                    List.of(new TextEdit(20, 1, "x")));
+            writer.write("FooTest.java", "b/FooTest.java", sourceB.toString(), ResultCache.contentHash(textB),
+                    List.of(new TextEdit(20, 1, "y")));
+        }
+
+        Path outputDir = temporaryFolder.getRoot().toPath().resolve("out");
+        assertEquals(0, Stage1Rebuilder.rebuild(archive.toPath(), outputDir));
+        assertEquals("class FooTest { int x; }", Files.readString(outputDir.resolve("a/FooTest.java")));
+        assertEquals("class FooTest { int y; }", Files.readString(outputDir.resolve("b/FooTest.java")));
+    }
+
+    @Test
+    public void changedOriginalIsSkipped() throws IOException {
+        Path source = writeSource("FooTest.java", "class FooTest {}");
+        File archive = temporaryFolder.newFile("parsed_tests_stage1.zip");
+        try (EditArchiveWriter writer = new EditArchiveWriter(archive)) {
+            writer.write("FooTest.java", "FooTest.java", source.toString(), ResultCache.contentHash("class FooTest { }"), List.of());
+        }
+
+        Path outputDir = temporaryFolder.getRoot().toPath().resolve("out");
+        assertEquals(1, Stage1Rebuilder.rebuild(archive.toPath(), outputDir));
+        assertFalse(Files.exists(outputDir.resolve("FooTest.java")));
+    }
+
+    @Test
+    public void resultRootRebuildsEachCompleteShardIntoItsOwnDir() throws IOException {
+        String text = "class FooTest { int a; }";
+        Path source = writeSource("a/FooTest.java", text);
+        File resultRoot = temporaryFolder.newFolder("result");
+        for (String shardDir : List.of("app_test", "lib_test", "partial_test")) {
+            PipelineConfig shardConfig = new PipelineConfig(new File(new PipelineConfig(resultRoot).getShardsDir(), shardDir));
+            try (EditArchiveWriter writer = new EditArchiveWriter(shardConfig.getStage1ArchiveFile())) {
+                writer.write("FooTest.java", "a/FooTest.java", source.toString(), ResultCache.contentHash(text),
+                        List.of(new TextEdit(20, 1, "x")));
+            }
+            if (!shardDir.startsWith("partial")) {
+                Files.writeString(shardConfig.getShardCompleteMarker().toPath(), shardDir + "\n1\n", StandardCharsets.UTF_8);
+            }
+        }
+
+        Path outputDir = temporaryFolder.getRoot().toPath().resolve("out");
+        assertEquals(0, Stage1Rebuilder.rebuildShards(resultRoot.toPath(), outputDir));
+        assertEquals("class FooTest { int x; }", Files.readString(outputDir.resolve("app_test/a/FooTest.java")));
+        assertEquals("class FooTest { int x; }", Files.readString(outputDir.resolve("lib_test/a/FooTest.java")));
+        assertFalse(Files.exists(outputDir.resolve("partial_test")));
+    }
+
+    @Test(expected = IOException.class)
+    public void outputPathOutsideOutputDirIsRejected() throws IOException {
+        String text = "class FooTest {}";
+        Path source = writeSource("FooTest.java", text);
+        File archive = temporaryFolder.newFile("parsed_tests_stage1.zip");
+        try (EditArchiveWriter writer = new EditArchiveWriter(archive)) {
+            writer.write("FooTest.java", "../FooTest.java", source.toString(), ResultCache.contentHash(text), List.of());
+        }
+
+        Stage1Rebuilder.rebuild(archive.toPath(), temporaryFolder.getRoot().toPath().resolve("out"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.plugin;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.util.Set;
+
+public class TestFileDiscoveryTest extends MockitoFixtureTestCase {
+    public void testFindsFilesWithTestMethods() {
+        VirtualFile plainTest = addJavaFile("demo/PlainTest.java", """
+                package demo;
+
+                import org.junit.Test;
+
+                public class PlainTest {
+                    @Test
+                    public void testA() {
+                    }
+                }
+                """).getVirtualFile();
+        VirtualFile qualifiedTest = addJavaFile("demo/QualifiedTest.java", """
+                package demo;
+
+                public class QualifiedTest {
+                    @org.junit.Test
+                    public void testB() {
+                    }
+                }
+                """).getVirtualFile();
+        VirtualFile nestedTest = addJavaFile("demo/OuterTest.java", """
+                package demo;
+
+                import org.junit.Test;
+
+                public class OuterTest {
+                    public static class Inner {
+                        @Test
+                        public void testC() {
+                        }
+                    }
+                }
+                """).getVirtualFile();
+        addJavaFile("demo/Service.java", """
+                package demo;
+
+                public class Service {
+                    public void testLike() {
+                    }
+                }
+                """);
+        addJavaFile("demo/OtherAnnotation.java", """
+                package demo;
+
+                public class OtherAnnotation {
+                    @interface Test {
+                    }
+
+                    @Test
+                    public void notJUnit() {
+                    }
+                }
+                """);
+
+        Set<VirtualFile> testFiles = TestFileDiscovery.findTestFiles(getProject());
+        assertSameElements(testFiles, plainTest, qualifiedTest, nestedTest);
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.plugin;
+
+import com.intellij.psi.PsiJavaFile;
+
+import java.util.List;
+
+public class TestFileRewriterTest extends MockitoFixtureTestCase {
+    private static final String SERVICE_TEST = """
+            package com.example.demo;
+
+            import org.junit.Test;
+            import org.mockito.Mock;
+
+            import static org.mockito.Mockito.*;
+
+            public class ServiceTest {
+                @Mock
+                private Repository repository;
+
+                @Test
+                public void testFind() {
+                    Repository local = mock(Repository.class);
+                    Service service = new Service(local);
+                    int count = 1;
+                    String name = "a";
+                    when(local.find("a")).thenReturn("b");
+                    verify(local).find("a");
+                    service = new Service(repository);
+                }
+            }
+            """;
+
+    // 删除的语句只去掉语句本身，所在行的缩进和换行保留
+    private static final String SERVICE_TEST_REWRITTEN = """
+            package com.example.demo;
+
+            import org.junit.Test;
+            import org.mockito.Mock;
+
+            import static org.mockito.Mockito.*;
+
+            public class ServiceTest {
+                com.example.demo.Repository repository = "<Instantiate com.example.demo.Repository>";
+
+                @Test
+                public void testFind() {
+                    Repository local = "<Instantiate Repository>";
+                    Service service = "<Instantiate Service>";
+                    int count = 1;
+                    String name = "a";
+            \s\s\s\s\s\s\s\s
+            \s\s\s\s\s\s\s\s
+                    service = "<Instantiate com.example.demo.Service>";
+                }
+            }
+            """;
+
+    private static final List<Instantiation> SERVICE_TEST_RECORDS = List.of(
+            new Instantiation("CLASS_LEVEL", "com.example.demo.Repository", true),
+            new Instantiation("testFind", "com.example.demo.Repository", true),
+            new Instantiation("testFind", "com.example.demo.Service", false),
+            new Instantiation("testFind", "com.example.demo.Service", false));
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        addJavaFile("com/example/demo/Repository.java", """
+                package com.example.demo;
+
+                public interface Repository {
+                    String find(String id);
+                }
+                """);
+        addJavaFile("com/example/demo/Service.java", """
+                package com.example.demo;
+
+                public class Service {
+                    public Service(Repository repository) {
+                    }
+                }
+                """);
+    }
+
+    public void testPsiCopyRewritesAndRecordsInstantiations() {
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), "ServiceTest.java");
+        String rewritten = rewriter.createModifiedContent(SERVICE_TEST);
+
+        // PSI 删除语句时由平台调整两侧空白，只比较非空白内容
+        assertEquals(normalizeWhitespace(SERVICE_TEST_REWRITTEN), normalizeWhitespace(rewritten));
+        assertEquals(SERVICE_TEST_RECORDS, rewriter.getRecords());
+    }
+
+    public void testPsiCopyLeavesUnrelatedFileUnchanged() {
+        String text = """
+                package com.example.demo;
+
+                public class PlainTest {
+                    public void testNothing() {
+                        int count = 1;
+                    }
+                }
+                """;
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), "PlainTest.java");
+        assertEquals(text, rewriter.createModifiedContent(text));
+        assertEmpty(rewriter.getRecords());
+        assertEmpty(rewriter.getTextEdits());
+    }
+
+    public void testTextOffsetsRewritesAndRecordsInstantiations() {
+        PsiJavaFile file = addJavaFile("com/example/demo/ServiceTest.java", SERVICE_TEST);
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), "ServiceTest.java");
+
+        assertEquals(SERVICE_TEST_REWRITTEN, rewriter.createModifiedContent(file));
+        assertEquals(SERVICE_TEST_RECORDS, rewriter.getRecords());
+        // 只读分析，不修改项目中的文件
+        assertEquals(SERVICE_TEST, file.getText());
+    }
+
+    public void testEnginesProduceTheSameResult() {
+        PsiJavaFile file = addJavaFile("com/example/demo/ServiceTest.java", SERVICE_TEST);
+        TestFileRewriter psiCopy = new TestFileRewriter(getProject(), "ServiceTest.java");
+        TestFileRewriter textOffsets = new TestFileRewriter(getProject(), "ServiceTest.java");
+        String psiCopyText = psiCopy.createModifiedContent(SERVICE_TEST);
+        String textOffsetsText = textOffsets.createModifiedContent(file);
+
+        assertEquals(psiCopy.getTextEdits(), textOffsets.getTextEdits());
+        assertEquals(psiCopy.getRecords(), textOffsets.getRecords());
+        assertEquals(normalizeWhitespace(psiCopyText), normalizeWhitespace(textOffsetsText));
+        // PSI_COPY 的修改列表应用到原文上，就是 TEXT_OFFSETS 的结果
+        assertEquals(textOffsetsText, TextEdit.apply(SERVICE_TEST, psiCopy.getTextEdits()));
+    }
+
+    public void testEnginesAgreeExactlyWithoutDeletions() {
+        String text = """
+                package com.example.demo;
+
+                public class ReplaceOnlyTest {
+                    public void testCreate() {
+                        Service first = new Service(null);
+                        Service second;
+                        second = new Service(first == null ? null : null);
+                    }
+                }
+                """;
+        PsiJavaFile file = addJavaFile("com/example/demo/ReplaceOnlyTest.java", text);
+        String psiCopyText = new TestFileRewriter(getProject(), "ReplaceOnlyTest.java").createModifiedContent(text);
+        String textOffsetsText = new TestFileRewriter(getProject(), "ReplaceOnlyTest.java").createModifiedContent(file);
+
+        assertEquals(textOffsetsText, psiCopyText);
+        assertTrue(textOffsetsText.contains("second = \"<Instantiate com.example.demo.Service>\";"));
+    }
+
+    public void testNestedClassesAreRewritten() {
+        PsiJavaFile file = addJavaFile("com/example/demo/OuterTest.java", """
+                package com.example.demo;
+
+                import org.junit.Test;
+                import org.mockito.Mock;
+
+                public class OuterTest {
+                    public class WhenEmpty {
+                        @Mock
+                        private Repository repository;
+
+                        @Test
+                        public void testEmpty() {
+                            Service service = new Service(repository);
+                        }
+
+                        public class AndClosed {
+                            @Test
+                            public void testClosed() {
+                                Service service = new Service(null);
+                            }
+                        }
+                    }
+
+                    public static class Helpers {
+                        void create() {
+                            Service service = new Service(null);
+                        }
+                    }
+                }
+                """);
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), "OuterTest.java");
+        String rewritten = rewriter.createModifiedContent(file);
+
+        assertEquals(List.of(
+                new Instantiation("CLASS_LEVEL", "com.example.demo.Repository", true),
+                new Instantiation("testEmpty", "com.example.demo.Service", false),
+                new Instantiation("testClosed", "com.example.demo.Service", false),
+                new Instantiation("create", "com.example.demo.Service", false)), rewriter.getRecords());
+        assertFalse(rewritten.contains("new Service"));
+        assertFalse(rewritten.contains("@Mock"));
+    }
+
+    public void testEachInstantiationIsVisitedOnce() {
+        // 单次遍历：已替换或删除的子树（包括其中的 lambda）不再进入，同一表达式只处理一次；
+        // Runnable 是被过滤的类型，lambda 体仍被遍历
+        PsiJavaFile file = addJavaFile("com/example/demo/OnceTest.java", """
+                package com.example.demo;
+
+                import static org.mockito.Mockito.*;
+
+                public class OnceTest {
+                    public void testOnce() {
+                        Service outer = new Service(new Service(null) == null ? null : null);
+                        Repository repository = mock(Repository.class);
+                        when(repository.find(anyString())).thenAnswer(invocation -> {
+                            Service inAnswer = new Service(null);
+                            return "a";
+                        });
+                        Service assigned;
+                        assigned = new Service(repository);
+                        Runnable task = () -> {
+                            Service inLambda = new Service(null);
+                        };
+                    }
+                }
+                """);
+        TestFileRewriter rewriter = new TestFileRewriter(getProject(), "OnceTest.java");
+        String rewritten = rewriter.createModifiedContent(file);
+
+        assertEquals(List.of(
+                new Instantiation("testOnce", "com.example.demo.Service", false),
+                new Instantiation("testOnce", "com.example.demo.Repository", true),
+                new Instantiation("testOnce", "com.example.demo.Service", false),
+                new Instantiation("testOnce", "com.example.demo.Service", false)), rewriter.getRecords());
+        assertEquals(5, rewriter.getTextEdits().size());
+        assertFalse(rewritten.contains("inAnswer"));
+        assertFalse(rewritten.contains("when("));
+    }
+
+    static String normalizeWhitespace(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.plugin;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextEditTest {
+    @Test
+    public void noEditsReturnsOriginal() {
+        assertEquals("class Foo {}", TextEdit.apply("class Foo {}", List.of()));
+    }
+
+    @Test
+    public void appliesReplacementsInsertionsAndDeletions() {
+        String original = "Foo foo = new Foo();";
+        List<TextEdit> edits = List.of(
+                new TextEdit(0, 0, "final "),
+                new TextEdit(10, 9, "mock(Foo.class)"),
+                new TextEdit(19, 1, ""));
+        assertEquals("final Foo foo = mock(Foo.class)", TextEdit.apply(original, edits));
+    }
+
+    @Test
+    public void appliesEditsAtBothEnds() {
+        assertEquals("<b>", TextEdit.apply("abc", List.of(new TextEdit(0, 1, "<"), new TextEdit(2, 1, ">"))));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.plugin;
+
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiTypes;
+
+public class TypeClassifierTest extends MockitoFixtureTestCase {
+    public void testPrimitiveNamesAgreeWithPrimitiveTypes() {
+        TypeClassifier classifier = TypeClassifier.getInstance(getProject());
+        for (PsiType type : new PsiType[]{PsiTypes.intType(), PsiTypes.charType(), PsiTypes.voidType()}) {
+            assertTrue(classifier.isBasicType(type));
+            assertTrue(type.getCanonicalText(), classifier.isBasicClassName(type.getCanonicalText()));
+        }
+    }
+
+    public void testClassNamesAgreeWithResolvedTypes() {
+        addJavaFile("demo/Service.java", "package demo;\n\npublic class Service {\n}\n");
+        TypeClassifier classifier = TypeClassifier.getInstance(getProject());
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(getProject());
+        for (String className : new String[]{"java.lang.String", "java.lang.String[]", "demo.Service", "demo.Missing"}) {
+            PsiType type = factory.createTypeFromText(className, null);
+            assertEquals(className, classifier.isBasicType(type), classifier.isBasicClassName(className));
+        }
+        assertTrue(classifier.isBasicClassName("java.lang.String"));
+        assertFalse(classifier.isBasicClassName("demo.Service"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.plugin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TypeFilterTest {
+    private static TypeFilter filterOf(String... patterns) {
+        TypeFilter filter = new TypeFilter();
+        for (String pattern : patterns) {
+            filter.addPattern(pattern);
+        }
+        return filter;
+    }
+
+    @Test
+    public void exactPatternMatchesOnlyThatType() {
+        TypeFilter filter = filterOf("java.lang.String");
+        assertTrue(filter.matches("java.lang.String"));
+        assertTrue(filter.matches(" java.lang.String "));
+        assertFalse(filter.matches("java.lang.StringBuilder"));
+        assertFalse(filter.matches("java.lang.String[]"));
+    }
+
+    @Test
+    public void genericWildcardMatchesAnyTypeArguments() {
+        TypeFilter filter = filterOf("java.util.List<*>");
+        assertTrue(filter.matches("java.util.List<java.lang.String>"));
+        assertTrue(filter.matches("java.util.List<java.util.Map<java.lang.String, java.lang.Integer>>"));
+        assertTrue(filter.matches("java.util.List"));
+        assertFalse(filter.matches("java.util.ArrayList<java.lang.String>"));
+    }
+
+    @Test
+    public void packageWildcardMatchesDirectMembersOnly() {
+        TypeFilter filter = filterOf("java.util.*");
+        assertTrue(filter.matches("java.util.HashMap"));
+        assertTrue(filter.matches("java.util.Map<java.lang.String, java.lang.Integer>"));
+        assertFalse(filter.matches("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(filter.matches("java.utils.Helper"));
+    }
+
+    @Test
+    public void packageTreeWildcardMatchesSubpackages() {
+        TypeFilter filter = filterOf("java.util.**");
+        assertTrue(filter.matches("java.util.HashMap"));
+        assertTrue(filter.matches("java.util.concurrent.atomic.AtomicLong"));
+        assertFalse(filter.matches("java.lang.String"));
+        assertFalse(filter.matches("java.utilities.Helper"));
+    }
+
+    @Test
+    public void arrayDimensionsMustMatch() {
+        TypeFilter filter = filterOf("byte[]", "java.util.List<*>[]", "java.time.*[][]");
+        assertTrue(filter.matches("byte[]"));
+        assertFalse(filter.matches("byte"));
+        assertFalse(filter.matches("byte[][]"));
+        assertTrue(filter.matches("java.util.List<java.lang.String>[]"));
+        assertFalse(filter.matches("java.util.List<java.lang.String>"));
+        assertTrue(filter.matches("java.time.Instant[][]"));
+        assertFalse(filter.matches("java.time.Instant[]"));
+    }
+
+    @Test
+    public void emptyFilterMatchesNothing() {
+        assertFalse(new TypeFilter().matches("java.lang.String"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyPattern() {
+        filterOf("  ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWildcardInsideName() {
+        filterOf("java.util.*Map");
+    }
+}